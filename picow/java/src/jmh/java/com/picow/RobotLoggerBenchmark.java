@@ -0,0 +1,52 @@
+package com.picow;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.picow.model.commands.CommandJsonEncoder;
+import com.picow.model.commands.MotorCommand;
+
+// Motor command logging into the rolling file appender, under different sampling policies
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotLoggerBenchmark {
+    @Param({"all", "every:10", "none"})
+    public String policy;
+
+    private final MotorCommand command = new MotorCommand(new int[]{65535, -32768, 1200, -65535}, 1718000000000L);
+    private final byte[] frame = new byte[CommandJsonEncoder.MAX_COMMAND_BYTES];
+    private int frameLength;
+
+    @Setup
+    public void setup() {
+        RobotLogger.initializeLogging();
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.parse(policy));
+        frameLength = CommandJsonEncoder.encode(command, frame, 0) - 1;
+    }
+
+    @Benchmark
+    public void logMotorCommand() {
+        RobotLogger.logMotorCommand(command);
+    }
+
+    // The bytes already encoded for the datagram, as sendMotorCommands logs them
+    @Benchmark
+    public void logSentMotorFrame() {
+        RobotLogger.logMotorCommand(command, frame, frameLength);
+    }
+}
@@ -0,0 +1,41 @@
+package com.picow.controller;
+
+import java.awt.event.KeyEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class KeyboardMixBenchmark {
+    private final Map<Integer, Boolean> keyStates = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setup() {
+        // Diagonal slide while rotating
+        keyStates.put(KeyEvent.VK_W, true);
+        keyStates.put(KeyEvent.VK_D, true);
+        keyStates.put(KeyEvent.VK_LEFT, true);
+        keyStates.put(KeyEvent.VK_S, false);
+    }
+
+    @Benchmark
+    public int[] mixSpeeds() {
+        return KeyboardController.mixSpeeds(keyStates, 80);
+    }
+}
@@ -0,0 +1,59 @@
+package com.picow.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of one recorded metric on the hot paths (budget: under 100 ns), alone and with 4 threads on the same metric
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private final Counter counter = new Counter("benchmark.counter");
+    private final LatencyHistogram histogram = new LatencyHistogram("benchmark.histogram");
+
+    // Latency-like values spread over the buckets, per thread
+    @State(Scope.Thread)
+    public static class Values {
+        long next = 1_000;
+
+        long next() {
+            next = next * 31 % 50_000_000 + 1;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void counterIncrementContended() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void histogramRecord(Values values) {
+        histogram.record(values.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramRecordContended(Values values) {
+        histogram.record(values.next());
+    }
+}
@@ -0,0 +1,47 @@
+package com.picow.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.picow.model.commands.MotorCommand;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorCommandBusBenchmark {
+    private static final String[] SOURCES = {
+        MotorCommandBus.AUTONOMOUS, MotorCommandBus.ANTI_COLLISION, MotorCommandBus.KEYBOARD, MotorCommandBus.GAMEPAD
+    };
+
+    @Param({"0", "1", "2", "3", "4"})
+    public int sources;
+
+    private MotorCommandBus bus;
+
+    @Setup
+    public void setup() {
+        bus = new MotorCommandBus();
+        for (int i = 0; i < sources; i++) {
+            bus.updateCommand(SOURCES[i], new MotorCommand(new int[]{i, i, i, i}, i));
+        }
+    }
+
+    @Benchmark
+    public MotorCommand getHighestPriorityCommand() {
+        return bus.getHighestPriorityCommand(1718000000000L);
+    }
+}
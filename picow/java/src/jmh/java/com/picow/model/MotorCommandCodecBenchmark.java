@@ -0,0 +1,52 @@
+package com.picow.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.picow.model.commands.CommandJsonEncoder;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.commands.SensorPullCommand;
+
+// Serialization done by RobotModel.sendMotorCommands and pollSensors on every frame
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorCommandCodecBenchmark {
+    private final Gson gson = new Gson();
+    private final MotorCommand command = new MotorCommand(new int[]{65535, -32768, 1200, -65535}, 1718000000000L);
+    private final SensorPullCommand sensorPull = new SensorPullCommand("imu", 0, 1718000000000L);
+    private final byte[] out = new byte[CommandJsonEncoder.MAX_COMMAND_BYTES];
+
+    @Benchmark
+    public String gsonToJson() {
+        return gson.toJson(command);
+    }
+
+    @Benchmark
+    public int schemaEncode() {
+        return CommandJsonEncoder.encode(command, out, 0);
+    }
+
+    @Benchmark
+    public String sensorPullGsonToJson() {
+        return gson.toJson(sensorPull);
+    }
+
+    @Benchmark
+    public int sensorPullSchemaEncode() {
+        return CommandJsonEncoder.encodeSensorPull(sensorPull, out, 0);
+    }
+}
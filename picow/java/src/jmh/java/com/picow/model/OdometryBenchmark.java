@@ -0,0 +1,40 @@
+package com.picow.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One dead-reckoning update per IMU sample as done on the telemetry thread, driving a slow arc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OdometryBenchmark {
+    private final int[] pwm = {30000, 40000, 30000, 40000};
+    private Odometry odometry;
+    private long nanos;
+
+    @Setup
+    public void setup() {
+        odometry = new Odometry();
+        nanos = 1;
+    }
+
+    @Benchmark
+    public Odometry.Pose update() {
+        nanos += 5_000_000L; // 200 Hz telemetry
+        odometry.update(pwm, 12.5, nanos);
+        return odometry.getPose();
+    }
+}
@@ -0,0 +1,47 @@
+package com.picow.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.model.sensors.Imu;
+import com.picow.network.TcpTransport;
+import com.picow.network.UdpTransport;
+
+// Decoding of one telemetry line as done on the sensor thread, with logging suppressed
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorDecodeBenchmark {
+    private static final String LINE = "{\"type\": \"imu\", \"id\": 0, \"timestamp\": 1718000000000, "
+        + "\"data\": {\"accel_g\": [0.0123, -0.0456, 0.9981], \"gyro_dps\": [1.25, -0.5, 12.75], "
+        + "\"temp_c\": 31.2}, \"error\": null}";
+
+    private RobotModel robot;
+
+    @Setup
+    public void setup() {
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        robot = new RobotModel(new Imu(), new TcpTransport("127.0.0.1", 0), new UdpTransport("127.0.0.1", 0));
+    }
+
+    @Benchmark
+    public Imu.Data processSensorData() {
+        robot.processSensorData(LINE);
+        return robot.getImuData();
+    }
+}
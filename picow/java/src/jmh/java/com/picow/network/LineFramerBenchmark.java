@@ -0,0 +1,53 @@
+package com.picow.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// TCP line framing of one read that carries several telemetry lines
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineFramerBenchmark {
+    private static final String LINE = "{\"type\": \"imu\", \"id\": 0, \"timestamp\": 1718000000000, "
+        + "\"data\": {\"accel_g\": [0.0123, -0.0456, 0.9981], \"gyro_dps\": [1.25, -0.5, 12.75], "
+        + "\"temp_c\": 31.2}, \"error\": null}\n";
+
+    @Param({"1", "8", "64"})
+    public int linesPerRead;
+
+    private final LineFramer framer = new LineFramer();
+    private char[] chunk;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < linesPerRead; i++) {
+            sb.append(LINE);
+        }
+        chunk = sb.toString().toCharArray();
+    }
+
+    @Benchmark
+    public void frame(Blackhole bh) {
+        framer.append(chunk, 0, chunk.length);
+        String line;
+        while ((line = framer.nextLine()) != null) {
+            bh.consume(line);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.picow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.picow.controller.ControllerBase;
+import com.picow.controller.HeadingHoldController;
+import com.picow.metrics.Metrics;
+import com.picow.model.RobotFactory;
+import com.picow.model.RobotModel;
+
+/**
+ * Entry point for control boxes without a display. Wires the robot, its
+ * non-Swing controllers and file logging, and never touches java.awt or
+ * javax.swing, so it starts faster and idles smaller than RobotControlApp.
+ * Verify with -verbose:class | grep -E "java.awt|javax.swing".
+ */
+public class HeadlessApp {
+    private static final int TCP_PORT = 8080;
+    private static final int UDP_PORT = 8081;
+    private static final String SERVER_IP = "192.168.4.1"; // Default IP for Pico W in Access Point mode
+    private static final int METRICS_REPORT_SECONDS = 60;
+
+    public static void main(String[] args) throws InterruptedException {
+        RobotLogger.initializeLogging();
+
+        RobotModel robot = RobotFactory.CreateRobot(
+            System.getProperty("robot.ip", SERVER_IP),
+            Integer.getInteger("robot.tcpPort", TCP_PORT),
+            Integer.getInteger("robot.udpPort", UDP_PORT));
+        if (robot == null) {
+            System.err.println("Failed to initialize robot");
+            System.exit(-1);
+        }
+        StartupProbe.watch(robot, "headless");
+
+        // Controllers that need no UI are added here
+        List<ControllerBase> controllers = new ArrayList<>();
+        if (Boolean.getBoolean("robot.headingHold")) {
+            controllers.add(new HeadingHoldController(robot));
+        }
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (ControllerBase controller : controllers) {
+                controller.stop();
+            }
+            try {
+                robot.stop();
+            } catch (Exception ex) {
+                System.err.println("Error disconnecting: " + ex.getMessage());
+            }
+            Metrics.stopReporter();
+            stopped.countDown();
+        }, "headless-shutdown"));
+
+        robot.start();
+        for (ControllerBase controller : controllers) {
+            controller.start();
+        }
+        Metrics.startReporter(METRICS_REPORT_SECONDS, TimeUnit.SECONDS);
+        stopped.await();
+    }
+}
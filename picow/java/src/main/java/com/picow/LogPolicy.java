@@ -0,0 +1,154 @@
+package com.picow;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.commands.SensorPullCommandJsonResponse;
+
+/**
+ * Decides whether a record of a given category is written. Policies are consulted
+ * before any serialization, so a rejected record costs only the check itself.
+ *
+ * Policies can be given as text, e.g. on the command line
+ * -Drobot.log.MOTOR_COMMAND=every:10, where the value is one of
+ * "all", "none", "every:N", "onchange" or "rate:PER_SECOND[/BURST]".
+ */
+public abstract class LogPolicy {
+
+    public abstract boolean admit(Object data);
+
+    public static LogPolicy all() {
+        return new LogPolicy() {
+            @Override
+            public boolean admit(Object data) { return true; }
+            @Override
+            public String toString() { return "all"; }
+        };
+    }
+
+    public static LogPolicy none() {
+        return new LogPolicy() {
+            @Override
+            public boolean admit(Object data) { return false; }
+            @Override
+            public String toString() { return "none"; }
+        };
+    }
+
+    public static LogPolicy everyNth(int n) {
+        return new EveryNth(n);
+    }
+
+    public static LogPolicy onChange() {
+        return new OnChange();
+    }
+
+    public static LogPolicy tokenBucket(double perSecond, int burst) {
+        return new TokenBucket(perSecond, burst);
+    }
+
+    public static LogPolicy parse(String spec) {
+        String s = spec.trim().toLowerCase();
+        try {
+            if (s.equals("all")) {
+                return all();
+            } else if (s.equals("none")) {
+                return none();
+            } else if (s.equals("onchange")) {
+                return onChange();
+            } else if (s.startsWith("every:")) {
+                return everyNth(Integer.parseInt(s.substring(6)));
+            } else if (s.startsWith("rate:")) {
+                String[] parts = s.substring(5).split("/");
+                double perSecond = Double.parseDouble(parts[0]);
+                int burst = parts.length > 1 ? Integer.parseInt(parts[1]) : Math.max(1, (int) Math.ceil(perSecond));
+                return tokenBucket(perSecond, burst);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid log policy: " + spec, e);
+        }
+        throw new IllegalArgumentException("Invalid log policy: " + spec);
+    }
+
+    // Cheap identity of the payload that ignores timestamps, used by onChange
+    static long fingerprint(Object data) {
+        if (data instanceof MotorCommand) {
+            return Arrays.hashCode(((MotorCommand) data).pwm);
+        }
+        if (data instanceof SensorPullCommandJsonResponse) {
+            SensorPullCommandJsonResponse response = (SensorPullCommandJsonResponse) data;
+            return 31L * Objects.hashCode(response.data) + Objects.hashCode(response.error);
+        }
+        return Objects.hashCode(data);
+    }
+
+    private static final class EveryNth extends LogPolicy {
+        private final int n;
+        private final AtomicLong count = new AtomicLong();
+
+        EveryNth(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("n must be positive");
+            }
+            this.n = n;
+        }
+
+        @Override
+        public boolean admit(Object data) {
+            return count.getAndIncrement() % n == 0;
+        }
+
+        @Override
+        public String toString() { return "every:" + n; }
+    }
+
+    private static final class OnChange extends LogPolicy {
+        // Long.MIN_VALUE never equals an int-derived fingerprint, so the first record always passes
+        private final AtomicLong last = new AtomicLong(Long.MIN_VALUE);
+
+        @Override
+        public boolean admit(Object data) {
+            long current = fingerprint(data);
+            return last.getAndSet(current) != current;
+        }
+
+        @Override
+        public String toString() { return "onchange"; }
+    }
+
+    private static final class TokenBucket extends LogPolicy {
+        private final double tokensPerNano;
+        private final int burst;
+        private final double perSecond;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double perSecond, int burst) {
+            if (perSecond <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("rate and burst must be positive");
+            }
+            this.perSecond = perSecond;
+            this.tokensPerNano = perSecond / 1_000_000_000.0;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = System.nanoTime();
+        }
+
+        @Override
+        public synchronized boolean admit(Object data) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() { return "rate:" + perSecond + "/" + burst; }
+    }
+}
@@ -1,13 +1,20 @@
 package com.picow;
 
+import java.util.concurrent.TimeUnit;
+
 import com.picow.controller.KeyboardController;
+import com.picow.metrics.Metrics;
 import com.picow.model.RobotFactory;
 import com.picow.model.RobotModel;
+import com.picow.ui.LinkHealthPanel;
 import com.picow.ui.MainWindow;
+import com.picow.ui.TelemetryPlotPanel;
 
 public class RobotControlApp {
     private static final int TCP_PORT = 8080;
     private static final int UDP_PORT = 8081;
+    private static final int METRICS_REPORT_SECONDS = 60;
+    private static final int KEYBOARD_HZ = 20; // initial rate, tunable over JMX and saved in the robot's profile
     private static final String SERVER_IP = "192.168.4.1"; // Default IP for Pico W in Access Point mode
     //private static final String SERVER_IP = "192.168.1.66";  // Change this to your server's IP address in your wifi network
 
@@ -18,14 +25,26 @@ public class RobotControlApp {
             MainWindow mainWindow = new MainWindow();
             
             // Create a model
-            RobotModel robot = RobotFactory.CreateRobot(SERVER_IP, TCP_PORT, UDP_PORT);
+            // -Drobot.ip=127.0.0.1 points the app at a local PicoSimulator
+            RobotModel robot = RobotFactory.CreateRobot(
+                System.getProperty("robot.ip", SERVER_IP),
+                Integer.getInteger("robot.tcpPort", TCP_PORT),
+                Integer.getInteger("robot.udpPort", UDP_PORT));
             if (robot == null) {
                 System.err.println("Failed to initialize robot");
                 System.exit(-1);
             }
 
+            StartupProbe.watch(robot, "gui");
+
+            // Live plots of telemetry and motor outputs
+            TelemetryPlotPanel plotPanel = new TelemetryPlotPanel();
+            plotPanel.attach(robot);
+            mainWindow.setPlotComponent(plotPanel);
+
             // Create controllers
-            KeyboardController keyboardController = new KeyboardController(robot, mainWindow, 20);
+            KeyboardController keyboardController = new KeyboardController(robot, mainWindow, KEYBOARD_HZ);
+            mainWindow.addStatusComponent(new LinkHealthPanel(robot, keyboardController));
             
             // Set up window closing handler
             mainWindow.setFocusable(true);  // Ensure window can receive focus
@@ -46,6 +65,7 @@ public class RobotControlApp {
             // Start robot and controllers
             robot.start();
             keyboardController.start();
+            Metrics.startReporter(METRICS_REPORT_SECONDS, TimeUnit.SECONDS);
 
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
@@ -1,18 +1,24 @@
 package com.picow;
 
-import javax.swing.JTextPane;
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
 import com.google.gson.Gson;
-import com.picow.ui.LogPanelAppender;
+import com.picow.model.commands.CommandJsonEncoder;
+import com.picow.model.commands.MotorFrameEncoder;
+import com.picow.time.Clock;
+import com.picow.time.SystemClock;
 
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.rolling.RollingFileAppender;
 import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
 
 public class RobotLogger {
     // Category constants for robot data
@@ -23,21 +29,139 @@ public class RobotLogger {
     // Single logger instance for all logging
     private static final Logger log = ((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger("ROBOT");
     private static final Gson gson = new Gson();
+    // Timestamps of the data entries; a virtual clock for simulated runs
+    private static volatile Clock clock = SystemClock.INSTANCE;
+
+    // Markers carry the category on the event so appenders need not re-parse the JSON
+    private static final Marker TELEMETRY_MARKER = MarkerFactory.getMarker(CATEGORY_TELEMETRY);
+    private static final Marker SENSOR_COMMAND_MARKER = MarkerFactory.getMarker(CATEGORY_SENSOR_COMMAND);
+    private static final Marker MOTOR_COMMAND_MARKER = MarkerFactory.getMarker(CATEGORY_MOTOR_COMMAND);
+
+    // Command entries are written here by CommandJsonEncoder rather than Gson, same bytes
+    private static final int ENTRY_BYTES = 64 + CommandJsonEncoder.MAX_COMMAND_BYTES + 64;
+    private static final ThreadLocal<byte[]> entryBuffer = ThreadLocal.withInitial(() -> new byte[ENTRY_BYTES]);
+    private static final byte[] TIMESTAMP = ",\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+
+    // Per-category sampling, checked before any Gson work
+    private static final CategoryGate TELEMETRY_GATE = new CategoryGate(CATEGORY_TELEMETRY);
+    private static final CategoryGate SENSOR_COMMAND_GATE = new CategoryGate(CATEGORY_SENSOR_COMMAND);
+    private static final CategoryGate MOTOR_COMMAND_GATE = new CategoryGate(CATEGORY_MOTOR_COMMAND);
 
     // Robot data logging methods - these will show up in both file and panel with colors
     public static void logTelemetry(Object data) {
-        LogEntry entry = new LogEntry(CATEGORY_TELEMETRY, data, Instant.now().toEpochMilli());
-        log.info(gson.toJson(entry));
+        if (!TELEMETRY_GATE.admit(data)) return;
+        LogEntry entry = new LogEntry(CATEGORY_TELEMETRY, data, clock.currentTimeMillis());
+        log.info(TELEMETRY_MARKER, gson.toJson(entry));
     }
 
     public static void logSensorPullCommand(Object data) {
-        LogEntry entry = new LogEntry(CATEGORY_SENSOR_COMMAND, data, Instant.now().toEpochMilli());
-        log.info(gson.toJson(entry));
+        if (!SENSOR_COMMAND_GATE.admit(data)) return;
+        log.info(SENSOR_COMMAND_MARKER, commandEntry(SENSOR_COMMAND_GATE, data, null, 0));
+    }
+
+    // json holds data as it went out, all but its closing brace, so it is not encoded twice
+    public static void logSensorPullCommand(Object data, byte[] json, int length) {
+        if (!SENSOR_COMMAND_GATE.admit(data)) return;
+        log.info(SENSOR_COMMAND_MARKER, commandEntry(SENSOR_COMMAND_GATE, data, json, length));
     }
 
     public static void logMotorCommand(Object data) {
-        LogEntry entry = new LogEntry(CATEGORY_MOTOR_COMMAND, data, Instant.now().toEpochMilli());
-        log.info(gson.toJson(entry));
+        if (!MOTOR_COMMAND_GATE.admit(data)) return;
+        log.info(MOTOR_COMMAND_MARKER, commandEntry(MOTOR_COMMAND_GATE, data, null, 0));
+    }
+
+    public static void logMotorCommand(Object data, byte[] json, int length) {
+        if (!MOTOR_COMMAND_GATE.admit(data)) return;
+        log.info(MOTOR_COMMAND_MARKER, commandEntry(MOTOR_COMMAND_GATE, data, json, length));
+    }
+
+    // {"category":C,"data":D,"timestamp":T} as Gson writes a LogEntry, without Gson for the command classes
+    private static String commandEntry(CategoryGate gate, Object data, byte[] json, int length) {
+        long ts = clock.currentTimeMillis();
+        byte[] prefix = gate.entryPrefix;
+        boolean encoded = json != null && prefix.length + length + 1 + TIMESTAMP.length + 21 <= ENTRY_BYTES;
+        if (!encoded && !CommandJsonEncoder.supports(data)) {
+            return gson.toJson(new LogEntry(gate.category, data, ts));
+        }
+        byte[] out = entryBuffer.get();
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        int pos = prefix.length;
+        if (encoded) {
+            System.arraycopy(json, 0, out, pos, length);
+            pos += length;
+            out[pos++] = '}';
+        } else {
+            pos = CommandJsonEncoder.encode(data, out, pos);
+        }
+        System.arraycopy(TIMESTAMP, 0, out, pos, TIMESTAMP.length);
+        pos = MotorFrameEncoder.putLong(ts, out, pos + TIMESTAMP.length);
+        out[pos++] = '}';
+        return new String(out, 0, pos, StandardCharsets.UTF_8);
+    }
+
+    public static void setClock(Clock newClock) {
+        clock = newClock;
+    }
+
+    public static void setPolicy(String category, LogPolicy policy) {
+        gate(category).policy = policy;
+    }
+
+    public static LogPolicy getPolicy(String category) {
+        return gate(category).policy;
+    }
+
+    public static CategoryGate getStats(String category) {
+        return gate(category);
+    }
+
+    private static CategoryGate gate(String category) {
+        switch (category) {
+            case CATEGORY_TELEMETRY:
+                return TELEMETRY_GATE;
+            case CATEGORY_SENSOR_COMMAND:
+                return SENSOR_COMMAND_GATE;
+            case CATEGORY_MOTOR_COMMAND:
+                return MOTOR_COMMAND_GATE;
+            default:
+                throw new IllegalArgumentException("Unknown log category: " + category);
+        }
+    }
+
+    public static final class CategoryGate {
+        private final String category;
+        private final byte[] entryPrefix;
+        private final LongAdder seen = new LongAdder();
+        private final LongAdder logged = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private volatile LogPolicy policy;
+
+        private CategoryGate(String category) {
+            this.category = category;
+            this.entryPrefix = ("{\"category\":\"" + category + "\",\"data\":").getBytes(StandardCharsets.US_ASCII);
+            String spec = System.getProperty("robot.log." + category);
+            this.policy = spec == null ? LogPolicy.all() : LogPolicy.parse(spec);
+        }
+
+        private boolean admit(Object data) {
+            seen.increment();
+            if (log.isInfoEnabled() && policy.admit(data)) {
+                logged.increment();
+                return true;
+            }
+            dropped.increment();
+            return false;
+        }
+
+        public String getCategory() { return category; }
+        public long getSeen() { return seen.sum(); }
+        public long getLogged() { return logged.sum(); }
+        public long getDropped() { return dropped.sum(); }
+
+        @Override
+        public String toString() {
+            return category + " policy=" + policy + " seen=" + getSeen() + " logged=" + getLogged() + " dropped=" + getDropped();
+        }
     }
 
     // System logging methods - these will only go to the log file
@@ -65,7 +189,13 @@ public class RobotLogger {
         }
     }
     
-    public static void initializeLogging(JTextPane logPanel, LogPanelAppender panelAppender) {
+    // File logging only, e.g. for headless runs
+    public static void initializeLogging() {
+        initializeLogging(null);
+    }
+
+    // Takes the extra appender as a plain logback Appender so headless runs never load Swing classes
+    public static void initializeLogging(Appender<ILoggingEvent> panelAppender) {
         LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
         loggerContext.reset();
 
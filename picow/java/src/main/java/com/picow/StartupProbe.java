@@ -0,0 +1,79 @@
+package com.picow;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+import com.picow.metrics.Metrics;
+import com.picow.model.RobotModel;
+import com.picow.model.commands.MotorCommand;
+
+/**
+ * Records time from JVM start to the first motor frame and, after an idle
+ * period, the resident set size and loaded class count, so the GUI and headless
+ * entry points can be compared. Results are logged and kept as startup.* gauges.
+ */
+public class StartupProbe {
+    public static final int IDLE_REPORT_SECONDS = 10;
+
+    private StartupProbe() {
+    }
+
+    public static void watch(RobotModel robot, String mode) {
+        Metrics.gauge("process.rssKb", StartupProbe::readRssKb);
+        Metrics.gauge("process.loadedClasses", () -> ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+        Consumer<MotorCommand> firstFrame = new Consumer<MotorCommand>() {
+            @Override
+            public void accept(MotorCommand command) {
+                robot.removeMotorCommandListener(this);
+                long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+                Metrics.gauge("startup.firstMotorFrame.millis").set(uptime);
+                report(mode + " first motor frame " + uptime + " ms after JVM start");
+            }
+        };
+        robot.addMotorCommandListener(firstFrame);
+
+        Thread idle = new Thread(() -> {
+            try {
+                Thread.sleep(IDLE_REPORT_SECONDS * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long rssKb = readRssKb();
+            Metrics.gauge("startup.idleRssKb").set(rssKb);
+            report(String.format("%s idle after %ds: rss %d MB, heap used %d MB, %d classes loaded",
+                mode, IDLE_REPORT_SECONDS, rssKb >> 10,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20,
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount()));
+        }, "startup-probe");
+        idle.setDaemon(true);
+        idle.start();
+    }
+
+    private static void report(String message) {
+        System.out.println(message);
+        RobotLogger.info(message);
+    }
+
+    // VmRSS from /proc on Linux; elsewhere falls back to committed heap plus non-heap
+    public static long readRssKb() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // fall through
+            }
+        }
+        return (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted()
+            + ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getCommitted()) >> 10;
+    }
+}
@@ -1,24 +1,80 @@
 package com.picow.controller;
+import com.picow.metrics.Allocations;
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
 import com.picow.model.RobotModel;
+import com.picow.model.sensors.Imu;
+import com.picow.time.Clock;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
+/**
+ * Runs readSensors()/takeActions() either on a fixed timer (PERIODIC) or once
+ * per new IMU sample (ON_IMU_SAMPLE). In sample mode the controller thread
+ * wakes as soon as processSensorData hands over a sample and gets that same
+ * object through onImuSample(); samples arriving while it is still busy are
+ * coalesced, so it always acts on the newest one. State that must see every
+ * sample, like an integral, is updated in onEverySample() instead.
+ * On a virtual clock both modes run as events on the robot's clock instead of
+ * on a thread of their own.
+ */
 public abstract class ControllerBase implements Runnable {
+    public enum Trigger { PERIODIC, ON_IMU_SAMPLE }
+
     protected final String id;
     protected final String name;
     protected final RobotModel robot;
-    protected final int frequency;
-    protected final double interval;
+    protected volatile int frequency;
+    protected volatile double interval;
     protected final AtomicBoolean running = new AtomicBoolean(false);
     protected Thread controlThread;
-    
+    protected final Clock clock;
+    private ScheduledExecutorService virtualScheduler;
+    private ScheduledFuture<?> virtualLoop;
+    private volatile long intervalNanos;
+    private long lastLoopStartNanos;
+    protected final LatencyHistogram loopLatency;
+    protected final LatencyHistogram loopJitter;
+    protected final Counter loopOverruns;
+    protected final LatencyHistogram loopAllocated;
+    protected final Trigger trigger;
+    protected final LatencyHistogram sampleToAction;
+    protected final Counter samplesCoalesced;
+    // ON_IMU_SAMPLE mode: System.nanoTime() at which the current sample was handed over
+    protected long sampleArrivedNanos;
+
+    private final AtomicReference<Imu.Data> pendingSample = new AtomicReference<>();
+    private volatile long pendingSampleNanos;
+    private final Consumer<Imu.Data> imuListener = this::sampleArrived;
 
     protected ControllerBase(RobotModel robot, String id, String name, int frequency) {
+        this(robot, id, name, frequency, Trigger.PERIODIC);
+    }
+
+    // frequency is only used for the timer in PERIODIC mode
+    protected ControllerBase(RobotModel robot, String id, String name, int frequency, Trigger trigger) {
         this.id = id;
         this.name = name;
         this.robot  = robot;
         this.frequency = frequency;
         this.interval = 1.0/frequency;
+        this.intervalNanos = (long) (interval * 1000) * 1_000_000L;
+        this.clock = robot.getClock();
+        this.trigger = trigger;
         this.controlThread = null;
+        String prefix = "controller." + name + "." + id;
+        this.loopLatency = Metrics.histogram(prefix + ".loop.nanos");
+        this.loopJitter = Metrics.histogram(prefix + ".jitter.nanos");
+        this.loopOverruns = Metrics.counter(prefix + ".overruns");
+        this.loopAllocated = Metrics.histogram(prefix + ".loop.alloc.bytes");
+        this.sampleToAction = Metrics.histogram(prefix + ".sampleToAction.nanos");
+        this.samplesCoalesced = Metrics.counter(prefix + ".samplesCoalesced");
     }
 
     public String getId() {
@@ -29,10 +85,78 @@ public abstract class ControllerBase implements Runnable {
         return name;
     }
 
+    public int getFrequency() {
+        return frequency;
+    }
+
+    // PERIODIC mode: takes effect from the next loop, without restarting the controller
+    public synchronized void setFrequency(int frequency) {
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("Frequency must be positive: " + frequency);
+        }
+        this.frequency = frequency;
+        this.interval = 1.0 / frequency;
+        this.intervalNanos = (long) (interval * 1000) * 1_000_000L;
+        if (virtualLoop != null) {
+            long period = (long) (interval * 1e9);
+            long next = Math.max(0, Math.min(virtualLoop.getDelay(TimeUnit.NANOSECONDS), period));
+            virtualLoop.cancel(false);
+            virtualLoop = virtualScheduler.scheduleAtFixedRate(this::loopOnce, next, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public RobotModel getRobot() {
+        return robot;
+    }
+
+    // "name.id", the key of this controller's rate in RobotSettings
+    public String getSettingsKey() {
+        return name + "." + id;
+    }
+
+    public LatencyHistogram getLoopJitter() {
+        return loopJitter;
+    }
+
+    public Counter getLoopOverruns() {
+        return loopOverruns;
+    }
+
+    public LatencyHistogram getLoopLatency() {
+        return loopLatency;
+    }
+
+    // Bytes allocated per loop iteration
+    public LatencyHistogram getLoopAllocated() {
+        return loopAllocated;
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    // Time from a sample reaching the model to the end of takeActions() in ON_IMU_SAMPLE mode
+    public LatencyHistogram getSampleToAction() {
+        return sampleToAction;
+    }
+
+    public Counter getSamplesCoalesced() {
+        return samplesCoalesced;
+    }
+
     protected abstract void readSensors();
     protected abstract void takeActions();
     protected abstract void init();
 
+    // ON_IMU_SAMPLE mode: called with the new sample before readSensors(); the sample is shared, do not modify it
+    protected void onImuSample(Imu.Data sample) {
+    }
+
+    // ON_IMU_SAMPLE mode: called on the sensor thread for every sample, coalesced ones included, before
+    // the controller is woken. sampleNanos is when the firmware read it on the robot's clock. Keep it short.
+    protected void onEverySample(Imu.Data sample, long sampleNanos) {
+    }
+
     public void start(){
         init();
 
@@ -40,20 +164,84 @@ public abstract class ControllerBase implements Runnable {
             return;
 
         running.set(true);
-        controlThread = new Thread(this, getClass().getName() + "-" + getName() + "-" +getId());
-        controlThread.start();
+        robot.getSettings().addControllerRate(getSettingsKey(), this::getFrequency, this::setFrequency);
+        String threadName = getClass().getName() + "-" + getName() + "-" +getId();
+        if (clock.isVirtual()) {
+            // No thread to sleep or park: periodic loops become scheduled events, samples are handled as they land
+            virtualScheduler = clock.newScheduler(threadName);
+            if (trigger == Trigger.PERIODIC) {
+                synchronized (this) {
+                    virtualLoop = virtualScheduler.scheduleAtFixedRate(this::loopOnce, 0, (long) (interval * 1e9), TimeUnit.NANOSECONDS);
+                }
+            }
+        } else {
+            controlThread = new Thread(this, threadName);
+            controlThread.start();
+        }
+        if (trigger == Trigger.ON_IMU_SAMPLE) {
+            robot.addImuListener(imuListener);
+        }
     }
 
     @Override
     public void run()
     {
-        long intervalMillis = (long)(this.interval * 1000);
+        if (trigger == Trigger.ON_IMU_SAMPLE) {
+            runOnSamples();
+        } else {
+            runPeriodic();
+        }
+    }
+
+    // Sensor thread: hand over the sample and wake the controller, never block
+    private void sampleArrived(Imu.Data sample) {
+        long now = clock.nanoTime();
+        onEverySample(sample, now - robot.getSampleAgeNanos());
+        if (virtualScheduler != null) {
+            sampleArrivedNanos = now;
+            handleSample(sample);
+            return;
+        }
+        pendingSampleNanos = now;
+        if (pendingSample.getAndSet(sample) != null) {
+            samplesCoalesced.increment();
+        }
+        LockSupport.unpark(controlThread);
+    }
+
+    private void runOnSamples() {
+        while (running.get()) {
+            Imu.Data sample = pendingSample.getAndSet(null);
+            if (sample == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    break;
+                }
+                continue;
+            }
+            // Read after taking the sample, so a newer arrival can only shorten it
+            sampleArrivedNanos = pendingSampleNanos;
+            handleSample(sample);
+        }
+    }
+
+    private void handleSample(Imu.Data sample) {
+        long loopStartNanos = System.nanoTime();
+        long allocStart = Allocations.threadBytes();
+        onImuSample(sample);
+        readSensors();
+        takeActions();
+        loopLatency.recordSince(loopStartNanos);
+        loopAllocated.record(Allocations.threadBytes() - allocStart);
+        sampleToAction.record(clock.nanoTime() - sampleArrivedNanos);
+    }
+
+    private void runPeriodic()
+    {
         while (running.get()){
+            long intervalMillis = (long)(this.interval * 1000);
             long loopStart = System.currentTimeMillis();
-            readSensors();
-
-            // Step 2: Run control logic
-            takeActions();
+            loopOnce();
 
             // Step 3: Sleep to maintain frequency
             long loopDuration = System.currentTimeMillis() - loopStart;
@@ -66,17 +254,50 @@ public abstract class ControllerBase implements Runnable {
                     break;
                 }
             } else {
+                loopOverruns.increment();
                 System.out.println("Warning: Loop overran by " + (-sleepTime) + " ms");
             }
         }
     }
 
+    private void loopOnce() {
+        long loopStartNanos = clock.nanoTime();
+        if (lastLoopStartNanos != 0) {
+            loopJitter.record(Math.abs(loopStartNanos - lastLoopStartNanos - intervalNanos));
+        }
+        lastLoopStartNanos = loopStartNanos;
+        long cpuStart = System.nanoTime();
+        long allocStart = Allocations.threadBytes();
+        readSensors();
+
+        // Step 2: Run control logic
+        takeActions();
+
+        loopLatency.recordSince(cpuStart);
+        loopAllocated.record(Allocations.threadBytes() - allocStart);
+    }
+
     public void stop(){
         running.set(false);
+        robot.getSettings().removeControllerRate(getSettingsKey());
+        if (trigger == Trigger.ON_IMU_SAMPLE) {
+            robot.removeImuListener(imuListener);
+        }
+        if (virtualScheduler != null) {
+            synchronized (this) {
+                virtualLoop = null;
+            }
+            virtualScheduler.shutdownNow();
+            virtualScheduler = null;
+            return;
+        }
+        if (trigger == Trigger.ON_IMU_SAMPLE) {
+            LockSupport.unpark(controlThread);
+        }
         try {
             controlThread.join();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,234 @@
+package com.picow.controller;
+
+import com.picow.RobotLogger;
+import com.picow.metrics.Gauge;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.MotorCommandBus;
+import com.picow.model.RobotModel;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.sensors.Imu;
+
+/**
+ * Holds a heading on the AUTONOMOUS slot while driving body velocity
+ * setpoints. Integrates gyro z into a heading on the sensor thread for every
+ * sample, timed by when the firmware read it. Once per handled sample it
+ * predicts the heading forward to when the command reaches the wheels and
+ * feeds a PD correction through the mecanum mixing.
+ * Heading is counter-clockwise positive in radians relative to the start;
+ * velocities are fractions of full speed, forward and to the left.
+ * The per-sample path does not allocate: commands come from a ring, reused
+ * once the bus has moved on to newer ones; the dispatcher hands off copies.
+ * Each heading step is timed for rise (10-90%), overshoot and settling.
+ */
+public class HeadingHoldController extends ControllerBase {
+    public static final double DEFAULT_KP = 2.5;   // turn fraction per radian of error
+    public static final double DEFAULT_KD = 0.15;  // turn fraction per rad/s
+    private static final double MAX_TURN = 0.6;
+    // The bus keeps only the newest command; the rest covers a dispatcher tick still reading an older one
+    private static final int COMMAND_RING = 16;
+    private static final double MIN_STEP_RADIANS = Math.toRadians(1);
+    private static final double SETTLE_BAND = 0.05;
+    private static final long SETTLE_WINDOW_NANOS = 300_000_000L;
+    private static final long STEP_TIMEOUT_NANOS = 5_000_000_000L;
+
+    private final MotorCommand[] commands = new MotorCommand[COMMAND_RING];
+    private int nextCommand;
+
+    private volatile double targetHeading;
+    private volatile double forward;
+    private volatile double left;
+    private volatile double kp = DEFAULT_KP;
+    private volatile double kd = DEFAULT_KD;
+
+    // Written on the sensor thread for every sample
+    private volatile double heading;
+    private volatile double omega;
+    private volatile long lastSampleNanos;
+
+    // Controller thread only
+    private double activeTarget;
+
+    // Step response of the current target change, controller thread only
+    private boolean stepActive;
+    private long stepStartNanos;
+    private double stepFrom;
+    private double stepSize;
+    private long rise10Nanos;
+    private long rise90Nanos;
+    private double peak;
+    private long inBandSinceNanos;
+
+    private final LatencyHistogram riseTime;
+    private final LatencyHistogram settleTime;
+    private final Gauge overshootPermille;
+    private final Gauge lookaheadNanos;
+
+    public HeadingHoldController(RobotModel robot) {
+        super(robot, "0", MotorCommandBus.AUTONOMOUS, robot.getSensorPollRate(), Trigger.ON_IMU_SAMPLE);
+        for (int i = 0; i < COMMAND_RING; i++) {
+            commands[i] = new MotorCommand(new int[4], 0);
+        }
+        String prefix = "controller." + name + "." + id;
+        this.riseTime = Metrics.histogram(prefix + ".step.rise.nanos");
+        this.settleTime = Metrics.histogram(prefix + ".step.settle.nanos");
+        this.overshootPermille = Metrics.gauge(prefix + ".step.overshoot.permille");
+        this.lookaheadNanos = Metrics.gauge(prefix + ".lookahead.nanos");
+    }
+
+    public void setHeading(double radians) {
+        targetHeading = radians;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+
+    public void setVelocity(double forward, double left) {
+        this.forward = forward;
+        this.left = left;
+    }
+
+    public void setGains(double kp, double kd) {
+        this.kp = kp;
+        this.kd = kd;
+    }
+
+    public LatencyHistogram getRiseTime() {
+        return riseTime;
+    }
+
+    public LatencyHistogram getSettleTime() {
+        return settleTime;
+    }
+
+    public long getLastOvershootPermille() {
+        return overshootPermille.getValue();
+    }
+
+    @Override
+    protected void init() {
+        heading = 0;
+        omega = 0;
+        lastSampleNanos = 0;
+        activeTarget = targetHeading;
+        stepActive = false;
+    }
+
+    // Coalesced samples still count towards the heading
+    @Override
+    protected void onEverySample(Imu.Data sample, long sampleNanos) {
+        double newOmega = Math.toRadians(sample.getGyro(2));
+        if (lastSampleNanos != 0) {
+            double dt = (sampleNanos - lastSampleNanos) / 1e9;
+            heading += 0.5 * (omega + newOmega) * dt;
+        }
+        omega = newOmega;
+        lastSampleNanos = sampleNanos;
+    }
+
+    @Override
+    protected void readSensors() {
+        double target = targetHeading;
+        if (target != activeTarget) {
+            startStep(target);
+        }
+        if (stepActive) {
+            trackStep(clock.nanoTime());
+        }
+    }
+
+    @Override
+    protected void takeActions() {
+        // From the newest integrated sample: the command waits half a motor period on
+        // average for the dispatcher, then travels about as long as the sample did
+        double rate = omega;
+        double current = heading;
+        long lookahead = (clock.nanoTime() - lastSampleNanos)
+            + 500_000_000L / robot.getMotorSendRate() + robot.getSampleAgeNanos();
+        lookaheadNanos.set(lookahead);
+        double predicted = current + rate * lookahead / 1e9;
+
+        double error = Math.IEEEremainder(activeTarget - predicted, 2 * Math.PI);
+        double turn = Math.max(-MAX_TURN, Math.min(MAX_TURN, kp * error - kd * rate));
+
+        // Mecanum mixing, wheel order and signs as in KeyboardController
+        double f = forward;
+        double l = left;
+        double w0 = f - l - turn;
+        double w1 = f + l + turn;
+        double w2 = f + l - turn;
+        double w3 = f - l + turn;
+        double max = Math.max(1, Math.max(Math.max(Math.abs(w0), Math.abs(w1)), Math.max(Math.abs(w2), Math.abs(w3))));
+
+        MotorCommand command = commands[nextCommand];
+        nextCommand = (nextCommand + 1) % COMMAND_RING;
+        command.pwm[0] = toPwm(w0 / max);
+        command.pwm[1] = toPwm(w1 / max);
+        command.pwm[2] = toPwm(w2 / max);
+        command.pwm[3] = toPwm(w3 / max);
+        command.timestamp = clock.currentTimeMillis();
+        robot.submitMotorCommand(command, name);
+    }
+
+    private static int toPwm(double fraction) {
+        return (int) (65535 * Math.max(-1, Math.min(1, fraction)));
+    }
+
+    private void startStep(double target) {
+        if (stepActive) {
+            finishStep(false);
+        }
+        stepFrom = heading;
+        stepSize = Math.IEEEremainder(target - heading, 2 * Math.PI); // the way the loop turns
+        activeTarget = target;
+        stepActive = Math.abs(stepSize) >= MIN_STEP_RADIANS;
+        stepStartNanos = clock.nanoTime();
+        rise10Nanos = 0;
+        rise90Nanos = 0;
+        peak = 0;
+        inBandSinceNanos = 0;
+    }
+
+    private void trackStep(long now) {
+        double progress = (heading - stepFrom) / stepSize;
+        if (rise10Nanos == 0 && progress >= 0.1) {
+            rise10Nanos = now;
+        }
+        if (rise90Nanos == 0 && progress >= 0.9) {
+            rise90Nanos = now;
+        }
+        peak = Math.max(peak, progress);
+        if (Math.abs(1 - progress) <= SETTLE_BAND) {
+            if (inBandSinceNanos == 0) {
+                inBandSinceNanos = now;
+            } else if (now - inBandSinceNanos >= SETTLE_WINDOW_NANOS) {
+                finishStep(true);
+            }
+        } else {
+            inBandSinceNanos = 0;
+        }
+        if (stepActive && now - stepStartNanos > STEP_TIMEOUT_NANOS) {
+            finishStep(false);
+        }
+    }
+
+    // Once per step, so the log line may allocate
+    private void finishStep(boolean settled) {
+        stepActive = false;
+        long overshoot = Math.round(Math.max(0, peak - 1) * 1000);
+        overshootPermille.set(overshoot);
+        if (rise90Nanos != 0) {
+            riseTime.record(rise90Nanos - rise10Nanos);
+        }
+        if (settled) {
+            settleTime.record(inBandSinceNanos - stepStartNanos);
+        }
+        RobotLogger.info("Heading step {} deg: rise {} ms, overshoot {}%, settle {} ms, sample-to-action p99 {} us",
+            Math.round(Math.toDegrees(stepSize)),
+            rise90Nanos != 0 ? (rise90Nanos - rise10Nanos) / 1_000_000 : "-",
+            overshoot / 10.0,
+            settled ? (inBandSinceNanos - stepStartNanos) / 1_000_000 : "-",
+            sampleToAction.getP99() / 1000);
+    }
+}
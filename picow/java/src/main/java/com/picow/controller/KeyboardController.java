@@ -158,6 +158,12 @@ public class KeyboardController extends ControllerBase {
     private void updateMotors() {
         if (!running.get()) return;
 
+        int[] speeds = mixSpeeds(keyStates, speed);
+        encodedPowers = encodeMotorPowerBits(speeds[0], speeds[1], speeds[2], speeds[3]);
+    }
+
+    // Combine the pressed keys into per-wheel speeds; package-private for benchmarks
+    static int[] mixSpeeds(Map<Integer, Boolean> keyStates, int speed) {
         double[] powers = new double[]{0, 0, 0, 0};
         
         if (keyStates.getOrDefault(STOP_ALL, false)) {
@@ -204,14 +210,12 @@ public class KeyboardController extends ControllerBase {
             }
         }
 
-        int[] speeds = new int[]{
+        return new int[]{
             (int)(powers[0] * speed),
             (int)(powers[1] * speed),
             (int)(powers[2] * speed),
             (int)(powers[3] * speed)
         };
-
-        encodedPowers = encodeMotorPowerBits(speeds[0], speeds[1], speeds[2], speeds[3]);
     }
 
     private static void addPower(double[] powers1, double[] powers2) {
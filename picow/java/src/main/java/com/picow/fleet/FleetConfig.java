@@ -0,0 +1,68 @@
+package com.picow.fleet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+
+/**
+ * Fleet description, read from JSON:
+ * <pre>
+ * {
+ *   "schedulerThreads": 2,
+ *   "robots": [
+ *     {"name": "bot1", "host": "192.168.4.1", "tcpPort": 8080, "udpPort": 8081},
+ *     {"name": "bot2", "host": "192.168.4.2"}
+ *   ]
+ * }
+ * </pre>
+ */
+public class FleetConfig {
+    public int schedulerThreads = 2;
+    public List<RobotEntry> robots = new ArrayList<>();
+
+    public static class RobotEntry {
+        public String name;
+        public String host;
+        public int tcpPort = 8080;
+        public int udpPort = 8081;
+
+        public RobotEntry() {
+        }
+
+        public RobotEntry(String name, String host, int tcpPort, int udpPort) {
+            this.name = name;
+            this.host = host;
+            this.tcpPort = tcpPort;
+            this.udpPort = udpPort;
+        }
+    }
+
+    public static FleetConfig load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            FleetConfig config = new Gson().fromJson(reader, FleetConfig.class);
+            config.validate();
+            return config;
+        }
+    }
+
+    public void validate() {
+        if (schedulerThreads <= 0) {
+            throw new IllegalArgumentException("schedulerThreads must be positive");
+        }
+        for (RobotEntry robot : robots) {
+            if (robot.name == null || robot.host == null) {
+                throw new IllegalArgumentException("Every robot needs a name and a host");
+            }
+        }
+        long distinct = robots.stream().map(r -> r.name).distinct().count();
+        if (distinct != robots.size()) {
+            throw new IllegalArgumentException("Robot names must be unique");
+        }
+    }
+}
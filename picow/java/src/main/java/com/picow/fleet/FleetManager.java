@@ -0,0 +1,195 @@
+package com.picow.fleet;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.metrics.Counter;
+import com.picow.metrics.Metrics;
+import com.picow.model.MotorCommandBus;
+import com.picow.model.RobotModel;
+import com.picow.model.sensors.Imu;
+import com.picow.network.NioEventLoop;
+import com.picow.network.NioTcpTransport;
+import com.picow.network.NioUdpTransport;
+import com.picow.sim.PicoSimulator;
+
+/**
+ * Runs many robots from one process on a fixed set of threads: one selector
+ * thread for all sockets and a small scheduler pool for every robot's poll and
+ * send ticks. Each robot has its own transports, command bus and metrics, under
+ * fleet.<name>.*, and the fleet.* gauges aggregate across robots.
+ */
+public class FleetManager {
+    private final FleetConfig config;
+    private final NioEventLoop ioLoop;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, RobotModel> robots = new LinkedHashMap<>();
+    private final Map<String, NioTcpTransport> tcpTransports = new LinkedHashMap<>();
+
+    public FleetManager(FleetConfig config) throws IOException {
+        config.validate();
+        this.config = config;
+        this.ioLoop = new NioEventLoop("fleet-io");
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(config.schedulerThreads, r -> {
+            Thread t = new Thread(r, "fleet-scheduler-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Cancelled robot tasks should not linger in the shared queue
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public synchronized void start() {
+        ioLoop.start();
+        for (FleetConfig.RobotEntry entry : config.robots) {
+            String prefix = "fleet." + entry.name;
+            NioTcpTransport tcp = new NioTcpTransport(ioLoop, entry.host, entry.tcpPort, prefix + ".tcp");
+            NioUdpTransport udp = new NioUdpTransport(entry.host, entry.udpPort, prefix + ".udp");
+            RobotModel robot = new RobotModel(entry.name, new Imu(), tcp, udp, scheduler);
+            tcp.connect();
+            robot.warmUp();
+            robot.start();
+            robots.put(entry.name, robot);
+            tcpTransports.put(entry.name, tcp);
+        }
+        registerAggregates();
+    }
+
+    public synchronized void stop() {
+        for (RobotModel robot : robots.values()) {
+            robot.stop();
+        }
+        scheduler.shutdown();
+        ioLoop.stop();
+    }
+
+    public synchronized Map<String, RobotModel> getRobots() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(robots));
+    }
+
+    public synchronized RobotModel getRobot(String name) {
+        return robots.get(name);
+    }
+
+    // Waits until every robot's TCP link is up; false on timeout
+    public boolean awaitConnected(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<NioTcpTransport> tcps;
+        synchronized (this) {
+            tcps = new ArrayList<>(tcpTransports.values());
+        }
+        while (!tcps.stream().allMatch(NioTcpTransport::isConnected)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private void registerAggregates() {
+        List<Counter> frames = new ArrayList<>();
+        List<Counter> samples = new ArrayList<>();
+        List<Counter> sendErrors = new ArrayList<>();
+        for (RobotModel robot : robots.values()) {
+            frames.add(Metrics.counter(robot.metricName("robot.motorFrames")));
+            samples.add(Metrics.counter(robot.metricName("robot.telemetrySamples")));
+            sendErrors.add(Metrics.counter(robot.metricName("robot.sendMotorCommands.errors")));
+        }
+        List<NioTcpTransport> tcps = new ArrayList<>(tcpTransports.values());
+        Metrics.gauge("fleet.robots", robots::size);
+        Metrics.gauge("fleet.connected", () -> tcps.stream().filter(NioTcpTransport::isConnected).count());
+        Metrics.gauge("fleet.motorFrames", () -> sum(frames));
+        Metrics.gauge("fleet.telemetrySamples", () -> sum(samples));
+        Metrics.gauge("fleet.sendErrors", () -> sum(sendErrors));
+        Metrics.gauge("fleet.threads", FleetManager::fleetThreadCount);
+    }
+
+    // Threads owned by fleets, excluding any simulators in the same process
+    public static long fleetThreadCount() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(t -> t.getName().startsWith("fleet-"))
+            .count();
+    }
+
+    private static long sum(List<Counter> counters) {
+        long total = 0;
+        for (Counter counter : counters) {
+            total += counter.getCount();
+        }
+        return total;
+    }
+
+    // Usage: FleetManager <fleet.json> | FleetManager --simulate <robots> [seconds]
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: FleetManager <fleet.json> | FleetManager --simulate <robots> [seconds]");
+            System.exit(-1);
+        }
+        RobotLogger.initializeLogging();
+
+        List<PicoSimulator> simulators = new ArrayList<>();
+        FleetConfig config;
+        int seconds = Integer.MAX_VALUE;
+        if (args[0].equals("--simulate")) {
+            // Measurement mode: local simulators, no per-frame file logging
+            RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+            RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+            RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+            int count = Integer.parseInt(args[1]);
+            seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            config = new FleetConfig();
+            for (int i = 0; i < count; i++) {
+                PicoSimulator simulator = new PicoSimulator(0, 0);
+                simulator.start();
+                simulators.add(simulator);
+                config.robots.add(new FleetConfig.RobotEntry("sim" + i, "127.0.0.1",
+                    simulator.getTcpPort(), simulator.getUdpPort()));
+            }
+        } else {
+            config = FleetConfig.load(Paths.get(args[0]));
+        }
+
+        long startNanos = System.nanoTime();
+        FleetManager fleet = new FleetManager(config);
+        fleet.start();
+        for (RobotModel robot : fleet.getRobots().values()) {
+            robot.setMotorPowers(new double[]{20, 20, 20, 20}, MotorCommandBus.AUTONOMOUS);
+        }
+        if (fleet.awaitConnected(5000)) {
+            System.out.printf("Fleet of %d robots ready in %d ms%n", config.robots.size(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+        }
+        Thread.sleep(1000);
+        System.out.println("Fleet of " + config.robots.size() + " robots runs on " + fleetThreadCount() + " threads");
+
+        long startFrames = Metrics.gauge("fleet.motorFrames").getValue();
+        long startSamples = Metrics.gauge("fleet.telemetrySamples").getValue();
+        long startMillis = System.currentTimeMillis();
+        for (int elapsed = 0; elapsed < seconds; elapsed += 5) {
+            Thread.sleep(Math.min(5, seconds - elapsed) * 1000L);
+            double secs = (System.currentTimeMillis() - startMillis) / 1000.0;
+            System.out.printf("connected=%d motorFrames/s=%.0f telemetry/s=%.0f threads=%d%n",
+                Metrics.gauge("fleet.connected").getValue(),
+                (Metrics.gauge("fleet.motorFrames").getValue() - startFrames) / secs,
+                (Metrics.gauge("fleet.telemetrySamples").getValue() - startSamples) / secs,
+                Metrics.gauge("fleet.threads").getValue());
+        }
+
+        fleet.stop();
+        for (PicoSimulator simulator : simulators) {
+            simulator.stop();
+        }
+        System.exit(0);
+    }
+}
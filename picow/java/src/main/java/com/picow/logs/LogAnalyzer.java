@@ -0,0 +1,255 @@
+package com.picow.logs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.picow.metrics.LatencyHistogram;
+
+/**
+ * Offline statistics over the robot.log files RobotLogger writes (the current
+ * one and the daily rolled ones): entries and rate per category, gaps between
+ * entries and latency per category, sessions and IMU drop-outs. The files are
+ * cut into chunks at line boundaries and scanned on a fork/join pool, each
+ * read in one go into a per-thread buffer and decoded in place by
+ * LogLineParser; per-chunk stats are merged in file order, so the result is
+ * the same for any number of threads or chunk size.
+ *
+ * Usage: LogAnalyzer [logDir] [--since yyyy-MM-dd] [--until yyyy-MM-dd] [--session-gap seconds]
+ *                    [--dropout millis] [--chunk megabytes] [--threads n]
+ */
+public class LogAnalyzer {
+    private static final Pattern ROLLED = Pattern.compile("robot\\.(\\d{4}-\\d{2}-\\d{2})\\.log");
+    private static final String CURRENT = "robot.log";
+    private static final int MAX_LINE_BYTES = 1 << 20; // a line may run this far past its chunk
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
+
+    private static final class Chunk {
+        final Path file;
+        final long start;
+        final long end;
+        final long fileSize;
+
+        Chunk(Path file, long start, long end, long fileSize) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.fileSize = fileSize;
+        }
+    }
+
+    private final long sessionGapMillis;
+    private final long dropoutMillis;
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<>();
+
+    public LogAnalyzer(long sessionGapMillis, long dropoutMillis) {
+        this.sessionGapMillis = sessionGapMillis;
+        this.dropoutMillis = dropoutMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get("logs");
+        LocalDate since = LocalDate.MIN;
+        LocalDate until = LocalDate.MAX;
+        long sessionGapSeconds = 10;
+        long dropoutMillis = 250;
+        long chunkBytes = 16L << 20;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--since": since = LocalDate.parse(args[++i]); break;
+                case "--until": until = LocalDate.parse(args[++i]); break;
+                case "--session-gap": sessionGapSeconds = Long.parseLong(args[++i]); break;
+                case "--dropout": dropoutMillis = Long.parseLong(args[++i]); break;
+                case "--chunk": chunkBytes = Long.parseLong(args[++i]) << 20; break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default: dir = Paths.get(args[i]);
+            }
+        }
+
+        List<Path> files = logFiles(dir, since, until);
+        if (files.isEmpty()) {
+            System.err.println("No robot logs in " + dir.toAbsolutePath() + " between " + since + " and " + until);
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        LogStats stats = new LogAnalyzer(sessionGapSeconds * 1000, dropoutMillis).analyze(files, chunkBytes, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d files, %.1f MB, %d lines in %.2f s (%.0f MB/s, %d threads)%n", files.size(),
+            stats.bytes / 1e6, stats.lines, seconds, stats.bytes / 1e6 / seconds, threads);
+        print(stats);
+    }
+
+    // Rolled files oldest first, then the current one, dated by its last change
+    static List<Path> logFiles(Path dir, LocalDate since, LocalDate until) throws IOException {
+        List<Path> rolled = new ArrayList<>();
+        Path current = null;
+        try (Stream<Path> entries = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) entries::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = ROLLED.matcher(name);
+                LocalDate date;
+                if (matcher.matches()) {
+                    date = LocalDate.parse(matcher.group(1));
+                } else if (name.equals(CURRENT)) {
+                    date = LocalDate.ofInstant(Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+                } else {
+                    continue;
+                }
+                if (date.isBefore(since) || date.isAfter(until)) {
+                    continue;
+                }
+                if (name.equals(CURRENT)) {
+                    current = file;
+                } else {
+                    rolled.add(file);
+                }
+            }
+        }
+        rolled.sort(null); // ISO dates sort by name
+        if (current != null) {
+            rolled.add(current);
+        }
+        return rolled;
+    }
+
+    LogStats analyze(List<Path> files, long chunkBytes, int threads) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : files) {
+            long size = Files.size(file);
+            for (long start = 0; start < size; start += chunkBytes) {
+                chunks.add(new Chunk(file, start, Math.min(size, start + chunkBytes), size));
+            }
+        }
+        if (chunks.isEmpty()) {
+            return new LogStats(sessionGapMillis, dropoutMillis);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new ChunkTask(chunks, 0, chunks.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private final class ChunkTask extends RecursiveTask<LogStats> {
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(List<Chunk> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LogStats compute() {
+            if (to - from == 1) {
+                try {
+                    return scan(chunks.get(from));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Error reading " + chunks.get(from).file + ": " + e.getMessage(), e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(chunks, from, middle);
+            left.fork();
+            LogStats right = new ChunkTask(chunks, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Every line that starts inside the chunk, read to its end even past the chunk
+    private LogStats scan(Chunk chunk) throws IOException {
+        LogStats stats = new LogStats(sessionGapMillis, dropoutMillis);
+        stats.bytes = chunk.end - chunk.start;
+        long readStart = chunk.start == 0 ? 0 : chunk.start - 1;
+        long readEnd = Math.min(chunk.fileSize, chunk.end + MAX_LINE_BYTES);
+        int limit = (int) (readEnd - readStart);
+        byte[] bytes = buffer(limit);
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            ByteBuffer target = ByteBuffer.wrap(bytes, 0, limit);
+            while (target.hasRemaining()) {
+                if (channel.read(target, readStart + target.position()) < 0) {
+                    limit = target.position(); // the file shrank
+                    break;
+                }
+            }
+        }
+        int stop = (int) Math.min(limit, chunk.end - readStart);
+        int pos = 0;
+        if (chunk.start > 0) {
+            // The line through the chunk start belongs to the chunk before
+            while (pos < limit && bytes[pos] != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+        LogLineParser parser = new LogLineParser();
+        while (pos < stop) {
+            int eol = pos;
+            while (eol < limit && bytes[eol] != '\n') {
+                eol++;
+            }
+            int lineEnd = eol > pos && bytes[eol - 1] == '\r' ? eol - 1 : eol;
+            parser.parse(bytes, pos, lineEnd);
+            stats.add(parser);
+            pos = eol + 1;
+        }
+        return stats;
+    }
+
+    // One read buffer per pool thread, grown to the largest chunk
+    private byte[] buffer(int size) {
+        byte[] bytes = buffers.get();
+        if (bytes == null || bytes.length < size) {
+            bytes = new byte[size];
+            buffers.set(bytes);
+        }
+        return bytes;
+    }
+
+    static void print(LogStats stats) {
+        long activeMillis = 0;
+        for (LogStats.Session session : stats.sessions) {
+            activeMillis += session.end - session.start;
+        }
+        System.out.printf("%d sessions, %.1f h active, %d error lines, %d malformed entries%n",
+            stats.sessions.size(), activeMillis / 3.6e6, stats.errorLines, stats.malformedLines);
+        System.out.printf("%-15s %10s %8s %8s %8s %9s %8s %8s %8s%n", "category", "entries", "rate/s",
+            "gap p50", "gap p99", "gap p999", "gap max", "lat p50", "lat p99");
+        for (int c = 0; c < stats.entries.length; c++) {
+            LatencyHistogram.Snapshot gap = stats.gaps[c].snapshot();
+            LatencyHistogram.Snapshot latency = stats.latencies[c].snapshot();
+            System.out.printf("%-15s %10d %8.1f %6dms %6dms %7dms %6dms %6dms %6dms%n", LogLineParser.CATEGORIES[c],
+                stats.entries[c], activeMillis == 0 ? 0 : stats.entries[c] * 1000.0 / activeMillis,
+                gap.percentile(50), gap.percentile(99), gap.percentile(99.9), gap.getMax(),
+                latency.percentile(50), latency.percentile(99));
+        }
+        System.out.printf("%-19s %-19s %9s %10s %10s %10s %9s%n", "session start", "end", "minutes",
+            "telemetry", "sensor", "motor", "dropouts");
+        for (LogStats.Session session : stats.sessions) {
+            System.out.printf("%-19s %-19s %9.1f %10d %10d %10d %9d%n",
+                TIME.format(Instant.ofEpochMilli(session.start)), TIME.format(Instant.ofEpochMilli(session.end)),
+                (session.end - session.start) / 60000.0,
+                session.entries[0], session.entries[1], session.entries[2], session.dropouts);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.picow.logs;
+
+import java.nio.charset.StandardCharsets;
+
+import com.picow.RobotLogger;
+
+/**
+ * Streaming decoder for robot.log lines, working on the bytes in place: no
+ * String, no JSON tree. Lines look like
+ * "2024-05-01 12:00:00.000 INFO  - {"category":..,"data":{..},"timestamp":..}"
+ * as written by RobotLogger; fields of the entry may come in any order, and
+ * of the data object only its own timestamp is read, the rest is skipped.
+ * Other lines (messages, stack traces) only have their level looked at.
+ * One parser per thread; parse() fills in the public fields.
+ */
+class LogLineParser {
+    static final String[] CATEGORIES = {
+        RobotLogger.CATEGORY_TELEMETRY, RobotLogger.CATEGORY_SENSOR_COMMAND, RobotLogger.CATEGORY_MOTOR_COMMAND};
+
+    private static final int MESSAGE_OFFSET = 32; // after "yyyy-MM-dd HH:mm:ss.SSS LEVEL - "
+    private static final byte[][] CATEGORY_BYTES = new byte[CATEGORIES.length][];
+    private static final byte[] CATEGORY_KEY = "category".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA_KEY = "data".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_KEY = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR_LEVEL = "ERROR".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            CATEGORY_BYTES[i] = CATEGORIES[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // Results of the last parse()
+    int category;        // index into CATEGORIES, -1 for a line without a data entry
+    long timestamp;      // of the entry, epoch millis
+    long dataTimestamp;  // of the logged command or response, -1 if it has none
+    boolean error;       // logged at ERROR level
+    boolean malformed;   // looked like an entry but did not decode
+
+    private byte[] bytes;
+    private int pos;
+    private int end;
+
+    // Decodes the line in [start, end) of the array, without the line break
+    void parse(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.end = end;
+        category = -1;
+        timestamp = -1;
+        dataTimestamp = -1;
+        malformed = false;
+        error = end - start > MESSAGE_OFFSET && matches(start + 24, ERROR_LEVEL);
+        if (end - start <= MESSAGE_OFFSET || bytes[start + MESSAGE_OFFSET] != '{'
+                || bytes[start + MESSAGE_OFFSET - 2] != '-') {
+            return;
+        }
+        pos = start + MESSAGE_OFFSET;
+        try {
+            parseEntry();
+            if (category < 0 || timestamp < 0) {
+                malformed = true;
+            }
+        } catch (IllegalStateException e) {
+            malformed = true;
+            category = -1;
+        }
+    }
+
+    private void parseEntry() {
+        expect('{');
+        if (peek() == '}') {
+            return;
+        }
+        while (true) {
+            int keyStart = pos + 1;
+            skipString();
+            int keyEnd = pos - 1;
+            expect(':');
+            if (keyIs(keyStart, keyEnd, CATEGORY_KEY)) {
+                category = readCategory();
+            } else if (keyIs(keyStart, keyEnd, TIMESTAMP_KEY)) {
+                timestamp = readLong();
+            } else if (keyIs(keyStart, keyEnd, DATA_KEY) && peek() == '{') {
+                parseData();
+            } else {
+                skipValue();
+            }
+            if (next() == '}') {
+                return;
+            }
+        }
+    }
+
+    // Only the data object's own timestamp; nested objects are skipped whole
+    private void parseData() {
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            int keyStart = pos + 1;
+            skipString();
+            int keyEnd = pos - 1;
+            expect(':');
+            if (keyIs(keyStart, keyEnd, TIMESTAMP_KEY) && peek() != 'n') {
+                dataTimestamp = readLong();
+            } else {
+                skipValue();
+            }
+            if (next() == '}') {
+                return;
+            }
+        }
+    }
+
+    private int readCategory() {
+        int start = pos + 1;
+        skipString();
+        int stop = pos - 1;
+        for (int i = 0; i < CATEGORY_BYTES.length; i++) {
+            if (keyIs(start, stop, CATEGORY_BYTES[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long readLong() {
+        boolean negative = peek() == '-';
+        if (negative) {
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < end) {
+            byte b = bytes[pos];
+            if (b < '0' || b > '9') break;
+            value = value * 10 + (b - '0');
+            pos++;
+            digits++;
+        }
+        if (digits == 0) {
+            throw new IllegalStateException("number expected");
+        }
+        // Gson writes longs as integers, but a double-typed field would have a fraction
+        while (pos < end && (bytes[pos] == '.' || bytes[pos] >= '0' && bytes[pos] <= '9')) {
+            pos++;
+        }
+        return negative ? -value : value;
+    }
+
+    private void skipValue() {
+        byte b = peek();
+        if (b == '"') {
+            skipString();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            while (true) {
+                b = peek();
+                if (b == '"') {
+                    skipString();
+                    continue;
+                }
+                pos++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return;
+                }
+            }
+        } else {
+            // Number, true, false or null
+            while (pos < end && (b = bytes[pos]) != ',' && b != '}' && b != ']') {
+                pos++;
+            }
+        }
+    }
+
+    private void skipString() {
+        expect('"');
+        while (true) {
+            byte b = next();
+            if (b == '\\') {
+                next();
+            } else if (b == '"') {
+                return;
+            }
+        }
+    }
+
+    private boolean keyIs(int start, int stop, byte[] key) {
+        return stop - start == key.length && matches(start, key);
+    }
+
+    private boolean matches(int start, byte[] expected) {
+        if (start + expected.length > end) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw new IllegalStateException("'" + c + "' expected");
+        }
+    }
+
+    private byte peek() {
+        if (pos >= end) {
+            throw new IllegalStateException("line ends early");
+        }
+        return bytes[pos];
+    }
+
+    private byte next() {
+        byte b = peek();
+        pos++;
+        return b;
+    }
+}
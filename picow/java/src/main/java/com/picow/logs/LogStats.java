@@ -0,0 +1,142 @@
+package com.picow.logs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.picow.metrics.LatencyHistogram;
+
+/**
+ * Statistics of a contiguous stretch of log lines, in milliseconds. Sessions
+ * are runs of data entries without a pause longer than the session gap; within
+ * one, the time between consecutive entries of a category goes into its gap
+ * histogram, and a TELEMETRY gap over the drop-out threshold counts as an IMU
+ * drop-out. Latency is the entry's timestamp minus the one in its data: the
+ * round trip for telemetry, command age at logging time for commands.
+ * merge() appends the stats of the stretch that follows, so chunks of a log
+ * can be scanned in parallel and combined in order.
+ */
+class LogStats {
+    static final int TELEMETRY = 0;
+
+    static final class Session {
+        long start;
+        long end;
+        final long[] entries = new long[LogLineParser.CATEGORIES.length];
+        long dropouts;
+
+        Session(long start) {
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    private final long sessionGapMillis;
+    private final long dropoutMillis;
+
+    long bytes;
+    long lines;
+    long errorLines;
+    long malformedLines;
+    final long[] entries = new long[LogLineParser.CATEGORIES.length];
+    final LatencyHistogram[] gaps = new LatencyHistogram[entries.length];
+    final LatencyHistogram[] latencies = new LatencyHistogram[entries.length];
+    final List<Session> sessions = new ArrayList<>();
+    private final long[] first = new long[entries.length];
+    private final long[] last = new long[entries.length];
+    private long lastAny = -1;
+
+    LogStats(long sessionGapMillis, long dropoutMillis) {
+        this.sessionGapMillis = sessionGapMillis;
+        this.dropoutMillis = dropoutMillis;
+        for (int c = 0; c < entries.length; c++) {
+            gaps[c] = new LatencyHistogram(LogLineParser.CATEGORIES[c] + ".gap.millis");
+            latencies[c] = new LatencyHistogram(LogLineParser.CATEGORIES[c] + ".latency.millis");
+            first[c] = -1;
+            last[c] = -1;
+        }
+    }
+
+    void add(LogLineParser line) {
+        lines++;
+        if (line.error) {
+            errorLines++;
+        }
+        if (line.malformed) {
+            malformedLines++;
+        }
+        int c = line.category;
+        if (c < 0) {
+            return;
+        }
+        long ts = line.timestamp;
+        Session session = sessions.isEmpty() ? null : sessions.get(sessions.size() - 1);
+        if (session == null || ts - lastAny > sessionGapMillis) {
+            session = new Session(ts);
+            sessions.add(session);
+        }
+        lastAny = Math.max(lastAny, ts);
+        session.end = Math.max(session.end, ts);
+        session.entries[c]++;
+        entries[c]++;
+
+        if (last[c] >= session.start) {
+            recordGap(c, ts - last[c], session);
+        }
+        if (first[c] < 0) {
+            first[c] = ts;
+        }
+        last[c] = Math.max(last[c], ts);
+        if (line.dataTimestamp >= 0) {
+            latencies[c].record(Math.max(0, ts - line.dataTimestamp));
+        }
+    }
+
+    private void recordGap(int c, long gap, Session session) {
+        gaps[c].record(Math.max(0, gap));
+        if (c == TELEMETRY && gap > dropoutMillis) {
+            session.dropouts++;
+        }
+    }
+
+    // Appends the stats of the lines right after these; returns this
+    LogStats merge(LogStats next) {
+        bytes += next.bytes;
+        lines += next.lines;
+        errorLines += next.errorLines;
+        malformedLines += next.malformedLines;
+        for (int c = 0; c < entries.length; c++) {
+            entries[c] += next.entries[c];
+            gaps[c].add(next.gaps[c].snapshot());
+            latencies[c].add(next.latencies[c].snapshot());
+        }
+        if (next.sessions.isEmpty()) {
+            return this;
+        }
+        int from = 0;
+        if (!sessions.isEmpty() && next.sessions.get(0).start - lastAny <= sessionGapMillis) {
+            // The last session here goes on into the next stretch
+            Session session = sessions.get(sessions.size() - 1);
+            Session continued = next.sessions.get(0);
+            for (int c = 0; c < entries.length; c++) {
+                if (last[c] >= session.start && next.first[c] >= 0 && next.first[c] <= continued.end) {
+                    recordGap(c, next.first[c] - last[c], session);
+                }
+                session.entries[c] += continued.entries[c];
+            }
+            session.end = Math.max(session.end, continued.end);
+            session.dropouts += continued.dropouts;
+            from = 1;
+        }
+        sessions.addAll(next.sessions.subList(from, next.sessions.size()));
+        for (int c = 0; c < entries.length; c++) {
+            if (first[c] < 0) {
+                first[c] = next.first[c];
+            }
+            if (next.last[c] >= 0) {
+                last[c] = next.last[c];
+            }
+        }
+        lastAny = Math.max(lastAny, next.lastAny);
+        return this;
+    }
+}
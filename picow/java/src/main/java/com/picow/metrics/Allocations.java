@@ -0,0 +1,36 @@
+package com.picow.metrics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated so far by the current thread, from the JVM's per-thread
+ * counters (com.sun.management.ThreadMXBean). Reading costs about 100 ns and
+ * does not allocate, so loops can take the difference around each iteration
+ * and record it in a histogram. Returns 0 on JVMs without the counters.
+ */
+public final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private Allocations() {
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    public static long threadBytes() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+}
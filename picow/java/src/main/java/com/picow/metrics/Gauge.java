@@ -0,0 +1,31 @@
+package com.picow.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Either set explicitly or computed on read from a supplier.
+ */
+public class Gauge implements GaugeMBean {
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+    private final LongSupplier supplier;
+
+    Gauge(String name, LongSupplier supplier) {
+        this.name = name;
+        this.supplier = supplier;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void set(long newValue) {
+        value.set(newValue);
+    }
+
+    @Override
+    public long getValue() {
+        return supplier != null ? supplier.getAsLong() : value.get();
+    }
+}
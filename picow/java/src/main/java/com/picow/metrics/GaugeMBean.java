@@ -0,0 +1,5 @@
+package com.picow.metrics;
+
+public interface GaugeMBean {
+    long getValue();
+}
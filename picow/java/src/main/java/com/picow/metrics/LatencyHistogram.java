@@ -0,0 +1,152 @@
+package com.picow.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket log-linear histogram of non-negative values, normally nanoseconds.
+ * Each power of two is split into 8 linear sub-buckets (about 12% relative error).
+ * record() is lock-free and does not allocate.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // Unregistered, e.g. for offline analysis; live metrics come from Metrics.histogram()
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    // Adds everything recorded in a snapshot of another histogram, e.g. when merging per-worker results
+    public void add(Snapshot other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (other.buckets[i] != 0) {
+                buckets.addAndGet(i, other.buckets[i]);
+            }
+        }
+        count.addAndGet(other.count);
+        sum.addAndGet(other.sum);
+        long m = max.get();
+        while (other.max > m && !max.compareAndSet(m, other.max)) {
+            m = max.get();
+        }
+    }
+
+    // Convenience for timing a section started with System.nanoTime()
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        int sub = bucket % SUB_COUNT;
+        return (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.get(), max.get());
+    }
+
+    @Override
+    public long getCount() { return count.get(); }
+    @Override
+    public double getMean() { long n = count.get(); return n == 0 ? 0 : (double) sum.get() / n; }
+    @Override
+    public long getMax() { return max.get(); }
+    @Override
+    public long getP50() { return snapshot().percentile(50); }
+    @Override
+    public long getP90() { return snapshot().percentile(90); }
+    @Override
+    public long getP99() { return snapshot().percentile(99); }
+    @Override
+    public long getP999() { return snapshot().percentile(99.9); }
+
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getMax() { return max; }
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+        // Midpoint of the bucket containing the given percentile, capped at the observed max
+        public long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(p / 100.0 * count);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long lo = lowerBound(i);
+                    long mid = lo + (upperBound(i) - lo) / 2;
+                    return Math.min(mid, max);
+                }
+            }
+            return max;
+        }
+
+        // Difference from an earlier snapshot of the same histogram, for interval rates
+        public Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[buckets.length];
+            for (int i = 0; i < diff.length; i++) {
+                diff[i] = buckets[i] - earlier.buckets[i];
+            }
+            return new Snapshot(diff, count - earlier.count, sum - earlier.sum, max);
+        }
+    }
+}
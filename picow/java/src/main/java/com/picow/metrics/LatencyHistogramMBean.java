@@ -0,0 +1,11 @@
+package com.picow.metrics;
+
+public interface LatencyHistogramMBean {
+    long getCount();
+    double getMean();
+    long getMax();
+    long getP50();
+    long getP90();
+    long getP99();
+    long getP999();
+}
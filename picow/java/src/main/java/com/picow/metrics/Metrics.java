@@ -0,0 +1,144 @@
+package com.picow.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.picow.RobotLogger;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ * Metrics are looked up once (keep the returned instance in a field) and then
+ * recorded to without locks or allocation. Every metric is also exposed as an
+ * MBean under com.picow:type=Metrics; registration happens on a background
+ * thread because starting the platform MBean server costs a few hundred ms.
+ */
+public class Metrics {
+    private static final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService reporter;
+    private static final ExecutorService jmxRegistrar = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "metrics-jmx");
+        t.setDaemon(true);
+        return t;
+    });
+    private static ScheduledFuture<?> reporterTask;
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return lookup(name, Counter.class, () -> new Counter(name));
+    }
+
+    public static Gauge gauge(String name) {
+        return lookup(name, Gauge.class, () -> new Gauge(name, null));
+    }
+
+    // A supplier gauge replaces any previous gauge of that name, e.g. after a robot restarts
+    public static Gauge gauge(String name, LongSupplier supplier) {
+        Gauge gauge = new Gauge(name, supplier);
+        metrics.put(name, gauge);
+        register(name, gauge);
+        return gauge;
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return lookup(name, LatencyHistogram.class, () -> new LatencyHistogram(name));
+    }
+
+    public static Object get(String name) {
+        return metrics.get(name);
+    }
+
+    private static <T> T lookup(String name, Class<T> type, Supplier<T> factory) {
+        Object existing = metrics.get(name);
+        if (existing == null) {
+            T created = factory.get();
+            existing = metrics.putIfAbsent(name, created);
+            if (existing == null) {
+                register(name, created);
+                existing = created;
+            }
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(existing);
+    }
+
+    private static void register(String name, Object metric) {
+        registerMBean("com.picow:type=Metrics,name=" + ObjectName.quote(name), metric);
+    }
+
+    // Any other MBean, on the same thread and in order, so a replaced bean is re-registered after the old one
+    public static void registerMBean(String objectName, Object bean) {
+        jmxRegistrar.execute(() -> {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(objectName);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(bean, name);
+            } catch (Exception e) {
+                System.err.println("Error registering " + objectName + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // One line per metric, sorted by name
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            Object metric = entry.getValue();
+            sb.append(entry.getKey()).append(' ');
+            if (metric instanceof Counter) {
+                sb.append("count=").append(((Counter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                sb.append("value=").append(((Gauge) metric).getValue());
+            } else if (metric instanceof LatencyHistogram) {
+                LatencyHistogram.Snapshot s = ((LatencyHistogram) metric).snapshot();
+                sb.append("count=").append(s.getCount())
+                    .append(" mean=").append((long) s.getMean())
+                    .append(" p50=").append(s.percentile(50))
+                    .append(" p99=").append(s.percentile(99))
+                    .append(" max=").append(s.getMax());
+            }
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    public static synchronized void startReporter(long period, TimeUnit unit) {
+        stopReporter();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporterTask = reporter.scheduleAtFixedRate(
+            () -> RobotLogger.info("Metrics snapshot{}{}", System.lineSeparator(), dump()),
+            period, period, unit);
+    }
+
+    public static synchronized void stopReporter() {
+        if (reporterTask != null) {
+            reporterTask.cancel(false);
+            reporterTask = null;
+        }
+        if (reporter != null) {
+            reporter.shutdown();
+            reporter = null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.picow.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.gson.Gson;
+import com.picow.RobotLogger;
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.commands.MotorFrameEncoder;
+import com.picow.model.commands.SensorPullCommand;
+import com.picow.network.DatagramTransport;
+import com.picow.network.StreamTransport;
+import com.picow.time.Clock;
+
+/**
+ * Latched emergency stop, e.g. for the ANTI_COLLISION source. trigger() sends
+ * stop frames over UDP from the calling thread at once, without waiting for
+ * the next motor tick or going through the command bus, then asks the firmware
+ * over TCP to latch the stop as well. While latched every motor tick sends a
+ * stop regardless of arbitration, flagged so the firmware latches on any of
+ * them, and the estop request is repeated until the firmware confirms it,
+ * again after each reconnect, until release() is called.
+ * TCP requests are queued in order and sent from the robot's executor, so a
+ * stalled TCP write never holds up a trigger or its UDP copies.
+ */
+public class EmergencyStop {
+    public static final int UDP_COPIES = 3;
+    // Well above the ack latency budget, so a slow reply is not answered with a second request
+    static final long RESEND_MILLIS = 100;
+    static final String ESTOP = "estop";
+    static final String ESTOP_RELEASE = "estop_release";
+    private static final byte[] ESTOP_FLAG = ",\"estop\":true}".getBytes(StandardCharsets.US_ASCII);
+    static final int ESTOP_FLAG_BYTES = ESTOP_FLAG.length - 1;
+
+    private final DatagramTransport udp;
+    private final StreamTransport tcp;
+    private final Executor tcpExecutor;
+    private final Clock clock;
+    private final Gson gson = new Gson();
+    private final byte[] frame = new byte[MotorFrameEncoder.MAX_FRAME_BYTES + ESTOP_FLAG_BYTES]; // guarded by itself
+    private final MotorCommand stopCommand = new MotorCommand(new int[4], 0);
+
+    // Latch state; never held across I/O
+    private final Object stateLock = new Object();
+    private volatile boolean latched;
+    private volatile boolean confirmed;
+    private volatile long requestNanos;
+
+    // Added under stateLock, so the firmware sees requests in the order the state changed
+    private final ConcurrentLinkedQueue<SensorPullCommand> tcpRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sendingTcp = new AtomicBoolean();
+
+    private final Counter triggers;
+    private final Counter sendErrors;
+    private final LatencyHistogram wireLatency;
+    private final LatencyHistogram ackLatency;
+
+    EmergencyStop(DatagramTransport udp, StreamTransport tcp, Executor tcpExecutor, RobotModel robot) {
+        this.udp = udp;
+        this.tcp = tcp;
+        this.tcpExecutor = tcpExecutor;
+        this.clock = robot.getClock();
+        this.triggers = Metrics.counter(robot.metricName("robot.estop.triggers"));
+        this.sendErrors = Metrics.counter(robot.metricName("robot.estop.sendErrors"));
+        this.wireLatency = Metrics.histogram(robot.metricName("robot.estop.wire.nanos"));
+        this.ackLatency = Metrics.histogram(robot.metricName("robot.estop.ack.nanos"));
+    }
+
+    public boolean isLatched() {
+        return latched;
+    }
+
+    // True once the firmware has acknowledged the current stop over TCP
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    // Zero PWM command sent on every tick while latched
+    MotorCommand stopCommand() {
+        return stopCommand;
+    }
+
+    // Marks an encoded stop frame, replacing its closing brace; returns the new length.
+    // out needs ESTOP_FLAG_BYTES past length.
+    static int flag(byte[] out, int length) {
+        System.arraycopy(ESTOP_FLAG, 0, out, length - 1, ESTOP_FLAG.length);
+        return length - 1 + ESTOP_FLAG.length;
+    }
+
+    public void trigger(String source) {
+        long start = System.nanoTime();
+        long ts = clock.currentTimeMillis();
+        synchronized (stateLock) {
+            requestNanos = clock.nanoTime();
+            confirmed = false;
+            latched = true;
+            stopCommand.timestamp = ts;
+            tcpRequests.add(new SensorPullCommand(ESTOP, 0, ts));
+        }
+        triggers.increment();
+
+        synchronized (frame) {
+            int length = flag(frame, MotorFrameEncoder.encode(stopCommand.pwm, ts, frame));
+            // Back-to-back copies; the motor ticks keep repeating the stop afterwards
+            for (int i = 0; i < UDP_COPIES; i++) {
+                try {
+                    udp.send(frame, length);
+                } catch (IOException e) {
+                    sendErrors.increment();
+                }
+            }
+        }
+        wireLatency.recordSince(start);
+
+        sendTcpRequests();
+        RobotLogger.info("Emergency stop latched by " + source);
+    }
+
+    public void release() {
+        synchronized (stateLock) {
+            if (!latched) return;
+            latched = false;
+            confirmed = false;
+            tcpRequests.add(new SensorPullCommand(ESTOP_RELEASE, 0, clock.currentTimeMillis()));
+        }
+        sendTcpRequests();
+        RobotLogger.info("Emergency stop released");
+    }
+
+    // Poll thread. A dropped link may mean the firmware restarted and lost the
+    // latch, so the confirmation no longer holds; an unconfirmed latch is requested again.
+    void refresh() {
+        boolean connected = tcp.isConnected();
+        synchronized (stateLock) {
+            if (!latched) return;
+            if (!connected) {
+                confirmed = false;
+                return;
+            }
+            long now = clock.nanoTime();
+            if (confirmed || now - requestNanos < TimeUnit.MILLISECONDS.toNanos(RESEND_MILLIS)) return;
+            requestNanos = now;
+            tcpRequests.add(new SensorPullCommand(ESTOP, 0, clock.currentTimeMillis()));
+        }
+        sendTcpRequests();
+    }
+
+    // Called with the firmware's TCP reply to an estop request
+    void acknowledge() {
+        long requested;
+        synchronized (stateLock) {
+            if (!latched || confirmed) return;
+            confirmed = true;
+            requested = requestNanos;
+        }
+        ackLatency.record(clock.nanoTime() - requested);
+    }
+
+    private void sendTcpRequests() {
+        try {
+            tcpExecutor.execute(this::drainTcpRequests);
+        } catch (RejectedExecutionException e) {
+            sendErrors.increment(); // stopped
+        }
+    }
+
+    // Executor thread; one drainer at a time keeps the queue order on a multi-threaded executor
+    private void drainTcpRequests() {
+        while (!tcpRequests.isEmpty() && sendingTcp.compareAndSet(false, true)) {
+            try {
+                SensorPullCommand request;
+                while ((request = tcpRequests.poll()) != null) {
+                    try {
+                        tcp.send(gson.toJson(request));
+                    } catch (Exception e) {
+                        sendErrors.increment();
+                        System.err.println("Error sending " + request.type + ": " + e.getMessage());
+                    }
+                }
+            } finally {
+                sendingTcp.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.picow.model;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.picow.metrics.Counter;
+import com.picow.metrics.Gauge;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.sensors.Imu;
+
+/**
+ * Publishes the robot's live state into a memory-mapped file so processes on
+ * the same host can read it without sockets or log parsing. Each record has
+ * one writer thread and starts with a seqlock sequence: the writer makes it
+ * odd, writes the fields and makes it even again, so a reader that sees the
+ * same even sequence before and after copying a record has a consistent copy.
+ * Writes go straight into the mapping and do not allocate.
+ *
+ * Layout, little-endian, 640 bytes, offsets in bytes:
+ * <pre>
+ *   0 header     long magic "PICOWLS1", int version, int file size, int source count,
+ *                int reserved, long created epoch millis, long writer pid
+ *  64 imu        long seq, long epoch millis, long sample age nanos,
+ *                double accel x/y/z (g), double gyro x/y/z (deg/s), double temp
+ * 192 motor      long seq, long epoch millis, int pwm[4], int flags (1 = emergency stop latched)
+ * 256 sources    4 slots of 64 bytes, highest priority first: long seq, long epoch millis,
+ *                int pwm[4], int active, int reserved, char name[16] (ASCII, NUL padded, fixed)
+ * 512 link       long seq, long epoch millis, long rtt p50 nanos, long rtt p99 nanos,
+ *                long sample age nanos, long telemetry samples, long motor frames,
+ *                long sensor polls, long poll errors, long send errors, long sensor errors,
+ *                long firmware udp lost, long firmware udp recovered
+ * </pre>
+ * IMU is written by the telemetry thread, motor by the thread that sends the
+ * frames, sources and link every PERIOD_MILLIS by the robot's scheduler.
+ */
+public class LiveStateExport implements AutoCloseable {
+    public static final long MAGIC = 0x31534C574F434950L; // "PICOWLS1"
+    public static final int VERSION = 1;
+    public static final int IMU_OFFSET = 64;
+    public static final int MOTOR_OFFSET = 192;
+    public static final int SOURCES_OFFSET = 256;
+    public static final int SOURCE_SLOT_BYTES = 64;
+    public static final int SOURCE_NAME_OFFSET = 40;
+    public static final int SOURCE_NAME_BYTES = 16;
+    public static final int LINK_OFFSET = 512;
+    public static final int FILE_BYTES = 640;
+    public static final int FLAG_ESTOP = 1;
+    public static final long PERIOD_MILLIS = 10;
+
+    static final VarHandle SEQ = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String[] sources = MotorCommandBus.getSources();
+
+    private final LatencyHistogram rtt;
+    private final Counter telemetrySamples;
+    private final Counter motorFrames;
+    private final Counter sensorPolls;
+    private final Counter pollErrors;
+    private final Counter sendErrors;
+    private final Counter sensorErrors;
+    private final Gauge firmwareLost;
+    private final Gauge firmwareRecovered;
+    private final Counter writes;
+
+    public LiveStateExport(Path path, RobotModel robot) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, FILE_BYTES);
+        buffer.putInt(16, sources.length);
+        buffer.putLong(24, System.currentTimeMillis());
+        buffer.putLong(32, ProcessHandle.current().pid());
+        for (int i = 0; i < sources.length; i++) {
+            byte[] name = sources[i].getBytes(StandardCharsets.US_ASCII);
+            int offset = SOURCES_OFFSET + i * SOURCE_SLOT_BYTES + SOURCE_NAME_OFFSET;
+            for (int b = 0; b < SOURCE_NAME_BYTES; b++) {
+                buffer.put(offset + b, b < name.length ? name[b] : 0);
+            }
+        }
+        // Readers check the magic last
+        SEQ.setRelease(buffer, 0, MAGIC);
+
+        rtt = Metrics.histogram(robot.metricName("tcp.rtt.nanos"));
+        telemetrySamples = Metrics.counter(robot.metricName("robot.telemetrySamples"));
+        motorFrames = Metrics.counter(robot.metricName("robot.motorFrames"));
+        sensorPolls = Metrics.counter(robot.metricName("robot.sensorPolls"));
+        pollErrors = Metrics.counter(robot.metricName("robot.pollSensors.errors"));
+        sendErrors = Metrics.counter(robot.metricName("robot.sendMotorCommands.errors"));
+        sensorErrors = Metrics.counter(robot.metricName("robot.sensorData.errors"));
+        firmwareLost = Metrics.gauge(robot.metricName("firmware.udp.lost"));
+        firmwareRecovered = Metrics.gauge(robot.metricName("firmware.udp.recovered"));
+        writes = Metrics.counter(robot.metricName("liveState.writes"));
+    }
+
+    // Telemetry thread
+    public void writeImu(Imu.Data sample, long millis, long sampleAgeNanos) {
+        long seq = begin(IMU_OFFSET);
+        buffer.putLong(IMU_OFFSET + 8, millis);
+        buffer.putLong(IMU_OFFSET + 16, sampleAgeNanos);
+        for (int axis = 0; axis < 3; axis++) {
+            buffer.putDouble(IMU_OFFSET + 24 + axis * 8, sample.getAccel(axis));
+            buffer.putDouble(IMU_OFFSET + 48 + axis * 8, sample.getGyro(axis));
+        }
+        buffer.putDouble(IMU_OFFSET + 72, sample.getTemp());
+        end(IMU_OFFSET, seq);
+    }
+
+    // Motor sending thread
+    public void writeMotor(MotorCommand command, long millis, boolean estopLatched) {
+        long seq = begin(MOTOR_OFFSET);
+        buffer.putLong(MOTOR_OFFSET + 8, millis);
+        putPwm(MOTOR_OFFSET + 16, command.pwm);
+        buffer.putInt(MOTOR_OFFSET + 32, estopLatched ? FLAG_ESTOP : 0);
+        end(MOTOR_OFFSET, seq);
+    }
+
+    // Robot scheduler
+    void writeSourcesAndLink(MotorCommandBus bus, long millis, long sampleAgeNanos) {
+        for (int i = 0; i < sources.length; i++) {
+            int offset = SOURCES_OFFSET + i * SOURCE_SLOT_BYTES;
+            MotorCommand command = bus.getCommand(sources[i]);
+            long seq = begin(offset);
+            buffer.putLong(offset + 8, command != null ? command.timestamp : 0);
+            putPwm(offset + 16, command != null ? command.pwm : null);
+            buffer.putInt(offset + 32, command != null ? 1 : 0);
+            end(offset, seq);
+        }
+
+        LatencyHistogram.Snapshot rttSnapshot = rtt.snapshot();
+        long seq = begin(LINK_OFFSET);
+        buffer.putLong(LINK_OFFSET + 8, millis);
+        buffer.putLong(LINK_OFFSET + 16, rttSnapshot.percentile(50));
+        buffer.putLong(LINK_OFFSET + 24, rttSnapshot.percentile(99));
+        buffer.putLong(LINK_OFFSET + 32, sampleAgeNanos);
+        buffer.putLong(LINK_OFFSET + 40, telemetrySamples.getCount());
+        buffer.putLong(LINK_OFFSET + 48, motorFrames.getCount());
+        buffer.putLong(LINK_OFFSET + 56, sensorPolls.getCount());
+        buffer.putLong(LINK_OFFSET + 64, pollErrors.getCount());
+        buffer.putLong(LINK_OFFSET + 72, sendErrors.getCount());
+        buffer.putLong(LINK_OFFSET + 80, sensorErrors.getCount());
+        buffer.putLong(LINK_OFFSET + 88, firmwareLost.getValue());
+        buffer.putLong(LINK_OFFSET + 96, firmwareRecovered.getValue());
+        end(LINK_OFFSET, seq);
+        writes.increment();
+    }
+
+    private void putPwm(int offset, int[] pwm) {
+        for (int i = 0; i < 4; i++) {
+            buffer.putInt(offset + i * 4, pwm != null && i < pwm.length ? pwm[i] : 0);
+        }
+    }
+
+    private long begin(int offset) {
+        long seq = (long) SEQ.getOpaque(buffer, offset) + 1;
+        SEQ.setOpaque(buffer, offset, seq);
+        // The odd sequence must be visible before any field changes
+        VarHandle.storeStoreFence();
+        return seq;
+    }
+
+    private void end(int offset, long seq) {
+        SEQ.setRelease(buffer, offset, seq + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
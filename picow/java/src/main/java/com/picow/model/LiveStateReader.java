@@ -0,0 +1,70 @@
+package com.picow.model;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads records of a LiveStateExport file from another thread or process
+ * with the seqlock protocol: copy while the sequence is even and unchanged,
+ * otherwise retry. A reader in another language does the same with the
+ * layout documented on LiveStateExport.
+ */
+public class LiveStateReader implements AutoCloseable {
+    private static final VarHandle SEQ = LiveStateExport.SEQ;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long retries;
+
+    public LiveStateReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() < LiveStateExport.FILE_BYTES) {
+            channel.close();
+            throw new IOException("Not a live state file: " + path);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, LiveStateExport.FILE_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if ((long) SEQ.getAcquire(buffer, 0) != LiveStateExport.MAGIC
+                || buffer.getInt(8) != LiveStateExport.VERSION) {
+            channel.close();
+            throw new IOException("Not a live state file of version " + LiveStateExport.VERSION + ": " + path);
+        }
+    }
+
+    // Copies out.remaining() bytes (a multiple of 8) of the record at offset into out, from its
+    // start, sequence included; returns the sequence of the copy, 0 if the record was never written
+    public long read(int offset, ByteBuffer out) {
+        int words = out.remaining() / 8;
+        int base = out.position();
+        while (true) {
+            long before = (long) SEQ.getAcquire(buffer, offset);
+            if ((before & 1) == 0) {
+                for (int i = 0; i < words; i++) {
+                    out.putLong(base + i * 8, buffer.getLong(offset + i * 8));
+                }
+                VarHandle.loadLoadFence();
+                if ((long) SEQ.getOpaque(buffer, offset) == before) {
+                    return before / 2;
+                }
+            }
+            retries++;
+            Thread.onSpinWait();
+        }
+    }
+
+    // Reads that had to start over because the writer was busy with the record
+    public long getRetries() {
+        return retries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
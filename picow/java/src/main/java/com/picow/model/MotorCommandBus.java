@@ -1,6 +1,8 @@
 package com.picow.model;
 import java.util.Map;
 import java.util.concurrent.*;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
 import com.picow.model.commands.MotorCommand;
 
 public class MotorCommandBus {
@@ -16,9 +18,19 @@ public class MotorCommandBus {
         ANTI_COLLISION, 20,
         AUTONOMOUS, 10
     );
+    // Sources from highest to lowest priority, so arbitration is a plain loop without allocation
+    private static final String[] byPriority = priorities.keySet().stream()
+        .sorted((a, b) -> priorities.get(b) - priorities.get(a))
+        .toArray(String[]::new);
+    private final LatencyHistogram arbitrationLatency;
 
     public MotorCommandBus(){
+        this("bus");
+    }
 
+    // Each robot's bus records under its own prefix, e.g. "fleet.<name>.bus"
+    public MotorCommandBus(String metricPrefix) {
+        this.arbitrationLatency = Metrics.histogram(metricPrefix + ".arbitration.nanos");
     }
 
     public void updateCommand(String source, MotorCommand command) {
@@ -27,15 +39,30 @@ public class MotorCommandBus {
     }
     
     public void clearCommand(String source, MotorCommand command) {
-        updateCommand(source, null);
+        latestCommands.remove(source);
+    }
+
+    // Latest command of one source, or null
+    public MotorCommand getCommand(String source) {
+        return latestCommands.get(source);
+    }
+
+    // All sources, highest priority first
+    public static String[] getSources() {
+        return byPriority.clone();
     }
 
     public MotorCommand getHighestPriorityCommand(long timestamp) {
-        return latestCommands.entrySet().stream()
-        .filter(entry -> entry.getValue() != null) // skip null values
-            .sorted((a, b) -> priorities.get(b.getKey()) - priorities.get(a.getKey()))
-            .map(Map.Entry::getValue)
-            .findFirst()
-            .orElse(new MotorCommand(new int[]{0, 0, 0, 0}, timestamp));
+        long start = System.nanoTime();
+        MotorCommand command = null;
+        for (String source : byPriority) {
+            command = latestCommands.get(source);
+            if (command != null) break;
+        }
+        if (command == null) {
+            command = new MotorCommand(new int[]{0, 0, 0, 0}, timestamp);
+        }
+        arbitrationLatency.recordSince(start);
+        return command;
     }
 }
@@ -0,0 +1,264 @@
+package com.picow.model;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import com.picow.metrics.Allocations;
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.commands.CommandJsonEncoder;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.commands.MotorFrameEncoder;
+import com.picow.model.commands.MotorFrameHistory;
+import com.picow.model.commands.TrajectoryCommand;
+import com.picow.network.DatagramTransport;
+
+/**
+ * Sends motor frames from one dedicated thread at a fixed rate. The thread
+ * parks until shortly before each tick and spins for the rest, encodes into a
+ * preallocated frame through MotorFrameHistory and never logs or touches Gson;
+ * sent commands and errors are handed to drain(), which the telemetry side
+ * calls for listeners and logs. Sent commands are copied into preallocated
+ * slots for the hand-off, since their owners may reuse them before a drain,
+ * together with the JSON that went out, so the log does not encode it again.
+ * Thread priority only has an effect where the JVM maps it to the OS
+ * (e.g. -XX:ThreadPriorityPolicy=1 on Linux as root).
+ */
+class MotorDispatcher {
+    public static final long DEFAULT_SPIN_NANOS = 50_000;
+    private static final int HANDOFF_CAPACITY = 256;
+
+    private final MotorCommandBus commandBus;
+    private final EmergencyStop emergencyStop;
+    private final DatagramTransport udp;
+    private final MotorFrameHistory frameHistory;
+    private final byte[] frame = new byte[MotorFrameHistory.MAX_PACKET_BYTES];
+    // Every slot is in exactly one of the two queues, or with the drain consumer
+    private final ArrayBlockingQueue<SentCommand> freeSlots = new ArrayBlockingQueue<>(HANDOFF_CAPACITY);
+    private final ArrayBlockingQueue<SentCommand> handoff = new ArrayBlockingQueue<>(HANDOFF_CAPACITY);
+    private final AtomicReference<IOException> lastError = new AtomicReference<>();
+
+    private volatile long periodNanos;
+    private volatile long spinNanos = DEFAULT_SPIN_NANOS;
+    private volatile boolean running;
+    private volatile MotorCommand lastSent;
+    private volatile LiveStateExport liveState;
+    private Thread thread;
+
+    private final Counter motorFrames;
+    private final Counter sendErrors;
+    private final LatencyHistogram sendLatency;
+    private final LatencyHistogram interval;
+    private final LatencyHistogram lateness;
+    private final Counter overruns;
+    private final Counter handoffDropped;
+    private final LatencyHistogram allocated;
+
+    MotorDispatcher(MotorCommandBus commandBus, EmergencyStop emergencyStop, DatagramTransport udp,
+                    MotorFrameHistory frameHistory, long periodNanos, RobotModel robot) {
+        this.commandBus = commandBus;
+        this.emergencyStop = emergencyStop;
+        this.udp = udp;
+        this.frameHistory = frameHistory;
+        this.periodNanos = periodNanos;
+        this.motorFrames = Metrics.counter(robot.metricName("robot.motorFrames"));
+        this.sendErrors = Metrics.counter(robot.metricName("robot.sendMotorCommands.errors"));
+        this.sendLatency = Metrics.histogram(robot.metricName("robot.sendMotorCommands.nanos"));
+        this.interval = Metrics.histogram(robot.metricName("robot.motorDispatch.interval.nanos"));
+        this.lateness = Metrics.histogram(robot.metricName("robot.motorDispatch.jitter.nanos"));
+        this.overruns = Metrics.counter(robot.metricName("robot.motorDispatch.overruns"));
+        this.handoffDropped = Metrics.counter(robot.metricName("robot.motorDispatch.handoffDropped"));
+        this.allocated = Metrics.histogram(robot.metricName("robot.motorDispatch.alloc.bytes"));
+        for (int i = 0; i < HANDOFF_CAPACITY; i++) {
+            freeSlots.add(new SentCommand());
+        }
+    }
+
+    synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "robot-motor-dispatch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    void setPeriodNanos(long periodNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + periodNanos);
+        }
+        this.periodNanos = periodNanos;
+    }
+
+    // How long before each tick the thread stops parking and spins; 0 disables spinning
+    void setSpinNanos(long spinNanos) {
+        this.spinNanos = Math.max(0, spinNanos);
+    }
+
+    void setLiveState(LiveStateExport liveState) {
+        this.liveState = liveState;
+    }
+
+    // The command of the latest frame that went out, trajectories as their sampled setpoint
+    MotorCommand getLastSent() {
+        return lastSent;
+    }
+
+    // A sent command, copied out of its owner's object
+    static final class SentCommand {
+        final MotorCommand command = new MotorCommand(new int[4], 0);
+        // The command's JSON as it went out, all but the closing brace; jsonLength is 0 if the frame does not start with it
+        final byte[] json = new byte[MotorFrameEncoder.MAX_FRAME_BYTES];
+        int jsonLength;
+    }
+
+    // Telemetry side: passes on sent commands and reports the latest send error, if any.
+    // Each one is a slot that is reused once the consumer returns.
+    void drain(Consumer<SentCommand> consumer) {
+        IOException error = lastError.getAndSet(null);
+        if (error != null) {
+            System.err.println("Error sending motor commands: " + error.getMessage());
+        }
+        SentCommand sent;
+        while ((sent = handoff.poll()) != null) {
+            try {
+                consumer.accept(sent);
+            } finally {
+                freeSlots.offer(sent);
+            }
+        }
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        long previous = 0;
+        while (running) {
+            waitUntil(next);
+            if (!running) break;
+            long now = System.nanoTime();
+            lateness.record(now - next);
+            if (previous != 0) {
+                interval.record(now - previous);
+            }
+            previous = now;
+
+            dispatchOnce();
+
+            long period = periodNanos;
+            next += period;
+            long behind = System.nanoTime() - next;
+            if (behind > 0) {
+                // Missed one or more ticks: skip them rather than sending a burst
+                overruns.increment();
+                next += (behind / period + 1) * period;
+            }
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        long spin = spinNanos;
+        while (running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            if (remaining > spin) {
+                LockSupport.parkNanos(remaining - spin);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void dispatchOnce() {
+        long start = System.nanoTime();
+        long allocStart = Allocations.threadBytes();
+        try {
+            long now = System.currentTimeMillis();
+            // A latched emergency stop bypasses arbitration
+            boolean latched = emergencyStop.isLatched();
+            MotorCommand command = latched ? emergencyStop.stopCommand()
+                : commandBus.getHighestPriorityCommand(now);
+            int length = frameHistory.encode(command, now, frame);
+            if (latched) {
+                // Stop frames never carry a plan, so the flag fits; any one of them re-latches the firmware
+                length = EmergencyStop.flag(frame, length);
+            }
+            udp.send(frame, length);
+            motorFrames.increment();
+            boolean sampled = command instanceof TrajectoryCommand;
+            if (sampled) {
+                // Listeners see the setpoint that went out, not the whole plan
+                command = new MotorCommand(frameHistory.copyLastPwm(), now);
+            }
+            lastSent = command;
+            LiveStateExport export = liveState;
+            if (export != null) {
+                export.writeMotor(command, now, latched);
+            }
+            SentCommand slot = freeSlots.poll();
+            if (slot == null) {
+                handoffDropped.increment();
+            } else {
+                copy(command, slot.command);
+                slot.jsonLength = 0;
+                if (!sampled && CommandJsonEncoder.supports(command)) {
+                    // The frame starts with the command's own JSON
+                    slot.jsonLength = frameHistory.getLastCommandLength();
+                    System.arraycopy(frame, 0, slot.json, 0, slot.jsonLength);
+                }
+                handoff.offer(slot);
+            }
+        } catch (IOException e) {
+            sendErrors.increment();
+            lastError.set(e);
+        } catch (RuntimeException e) {
+            sendErrors.increment();
+            lastError.set(new IOException(e));
+        } finally {
+            sendLatency.recordSince(start);
+            allocated.record(Allocations.threadBytes() - allocStart);
+        }
+    }
+
+    private static void copy(MotorCommand from, MotorCommand to) {
+        int[] pwm = from.pwm;
+        if (pwm == null) {
+            to.pwm = null;
+        } else {
+            if (to.pwm == null || to.pwm.length != pwm.length) {
+                to.pwm = new int[pwm.length];
+            }
+            System.arraycopy(pwm, 0, to.pwm, 0, pwm.length);
+        }
+        to.type = from.type;
+        to.timestamp = from.timestamp;
+    }
+
+    static long periodForHz(int hz) {
+        if (hz <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + hz);
+        }
+        return TimeUnit.SECONDS.toNanos(1) / hz;
+    }
+}
@@ -0,0 +1,130 @@
+package com.picow.model;
+
+/**
+ * Dead-reckoning pose estimate from the commanded wheel PWM and the IMU yaw
+ * rate. Each update runs the wheel speeds through a first-order motor lag and
+ * mecanum forward kinematics for the body velocity, blends the yaw rate with
+ * the gyro and integrates into the world frame, in constant time.
+ * Updates come from one thread (the telemetry thread); the pose is published
+ * as an immutable Pose through a volatile field, like Imu.Data, so readers
+ * never lock. The trail keeps the last positions in primitive arrays.
+ * Kinematics and signs follow MecanumPhysics: x forward, y left, theta
+ * counter-clockwise, in meters and radians.
+ */
+public class Odometry {
+    public static final int DEFAULT_TRAIL_CAPACITY = 2048;
+    public static final double DEFAULT_GYRO_WEIGHT = 0.98;
+    private static final double MIN_TRAIL_SPACING = 0.01; // meters between trail points
+    private static final double MAX_STEP_SECONDS = 0.25;  // longer gaps are not extrapolated
+
+    public static final class Pose {
+        public final double x, y, theta;     // world frame
+        public final double vx, vy, omega;   // body frame
+        public final long nanos;             // System.nanoTime() of the update
+
+        Pose(double x, double y, double theta, double vx, double vy, double omega, long nanos) {
+            this.x = x;
+            this.y = y;
+            this.theta = theta;
+            this.vx = vx;
+            this.vy = vy;
+            this.omega = omega;
+            this.nanos = nanos;
+        }
+    }
+
+    private final double maxWheelSpeed;      // m/s of wheel surface at full PWM
+    private final double motorTimeConstant;  // seconds
+    private final double halfTrackPlusBase;  // lx + ly in meters
+    private volatile double gyroWeight = DEFAULT_GYRO_WEIGHT;
+
+    // Updating thread only
+    private final double[] wheel = new double[4];
+    private double x, y, theta;
+    private long lastNanos;
+
+    private volatile Pose pose = new Pose(0, 0, 0, 0, 0, 0, 0);
+
+    private final double[] trailX;
+    private final double[] trailY;
+    private volatile int trailCount; // published after the point is written
+    private double lastTrailX, lastTrailY;
+
+    public Odometry() {
+        this(0.5, 0.08, 0.2, DEFAULT_TRAIL_CAPACITY);
+    }
+
+    public Odometry(double maxWheelSpeed, double motorTimeConstant, double halfTrackPlusBase, int trailCapacity) {
+        this.maxWheelSpeed = maxWheelSpeed;
+        this.motorTimeConstant = motorTimeConstant;
+        this.halfTrackPlusBase = halfTrackPlusBase;
+        this.trailX = new double[trailCapacity];
+        this.trailY = new double[trailCapacity];
+    }
+
+    // 1 trusts only the gyro for yaw rate, 0 only the commanded wheels
+    public void setGyroWeight(double gyroWeight) {
+        this.gyroWeight = Math.max(0, Math.min(1, gyroWeight));
+    }
+
+    public Pose getPose() {
+        return pose;
+    }
+
+    public void update(int[] pwm, double gyroZDps, long nanos) {
+        double dt = lastNanos == 0 ? 0 : Math.min((nanos - lastNanos) / 1e9, MAX_STEP_SECONDS);
+        lastNanos = nanos;
+
+        double alpha = dt / (motorTimeConstant + dt);
+        for (int i = 0; i < 4; i++) {
+            double target = pwm == null ? 0 : maxWheelSpeed * Math.max(-65535, Math.min(65535, pwm[i])) / 65535.0;
+            wheel[i] += alpha * (target - wheel[i]);
+        }
+        double vx = (wheel[0] + wheel[1] + wheel[2] + wheel[3]) / 4.0;
+        double vy = (-wheel[0] + wheel[1] + wheel[2] - wheel[3]) / 4.0;
+        double wheelOmega = (-wheel[0] + wheel[1] - wheel[2] + wheel[3]) / (4.0 * halfTrackPlusBase);
+        double w = gyroWeight;
+        double omega = w * Math.toRadians(gyroZDps) + (1 - w) * wheelOmega;
+
+        // Integrate at the mid-step heading
+        double mid = theta + omega * dt / 2;
+        double cos = Math.cos(mid);
+        double sin = Math.sin(mid);
+        x += (vx * cos - vy * sin) * dt;
+        y += (vx * sin + vy * cos) * dt;
+        theta += omega * dt;
+
+        pose = new Pose(x, y, theta, vx, vy, omega, nanos);
+        appendTrail();
+    }
+
+    private void appendTrail() {
+        int count = trailCount;
+        if (count > 0 && Math.abs(x - lastTrailX) + Math.abs(y - lastTrailY) < MIN_TRAIL_SPACING) {
+            return;
+        }
+        int slot = count % trailX.length;
+        trailX[slot] = x;
+        trailY[slot] = y;
+        lastTrailX = x;
+        lastTrailY = y;
+        trailCount = count + 1;
+    }
+
+    // Copies the trail oldest first into the arrays, at most their length; returns the number copied.
+    // A point being overwritten while copying may come out torn, which a display can live with.
+    public int copyTrail(double[] xs, double[] ys) {
+        int count = trailCount;
+        int n = Math.min(Math.min(count, trailX.length), Math.min(xs.length, ys.length));
+        for (int i = 0; i < n; i++) {
+            int slot = (count - n + i) % trailX.length;
+            xs[i] = trailX[slot];
+            ys[i] = trailY[slot];
+        }
+        return n;
+    }
+
+    public int getTrailCapacity() {
+        return trailX.length;
+    }
+}
@@ -1,57 +1,130 @@
 package com.picow.model;
 
 import java.io.IOException;
-import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import com.picow.RobotLogger;
+import com.picow.metrics.Metrics;
 import com.picow.model.sensors.Imu;
 import com.picow.network.TcpTransport;
 import com.picow.network.UdpTransport;
 
 public class RobotFactory {
-    
+    public static final long DEFAULT_STARTUP_DEADLINE_MILLIS = 2000;
 
     public static RobotModel CreateRobot(String serverIp, int tcpPort, int udpPort){
+        return CreateRobot(serverIp, tcpPort, udpPort, DEFAULT_STARTUP_DEADLINE_MILLIS);
+    }
+
+    // Connects TCP, opens UDP and warms the codecs in parallel, waiting at most
+    // deadlineMillis overall. A TCP link that is not up by then keeps connecting
+    // in the background; the robot is returned either way.
+    public static RobotModel CreateRobot(String serverIp, int tcpPort, int udpPort, long deadlineMillis){
         Imu imu = new Imu();
         System.out.println("Conecting to " + serverIp);
-        // Verify we can reach the server
-        if (!isServerReachable(serverIp)) {
-            System.err.println("Cannot reach server at " + serverIp);
-            return null;
-        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
 
         // Create network manager and main window
         TcpTransport tcp = null;
         UdpTransport udp = null;
+        ExecutorService startup = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "robot-startup");
+            t.setDaemon(true);
+            return t;
+        });
         try {
             tcp = new TcpTransport(serverIp, tcpPort);
             udp = new UdpTransport(serverIp, udpPort);
+
+            // Network first, so the handshake overlaps building the model
+            TcpTransport tcpTransport = tcp;
+            UdpTransport udpTransport = udp;
+            Map<String, Future<Long>> phases = new LinkedHashMap<>();
+            phases.put("tcp", startup.submit(timed(() -> {
+                tcpTransport.connect();
+                return tcpTransport.awaitConnected(deadlineMillis);
+            })));
+            phases.put("udp", startup.submit(timed(() -> {
+                udpTransport.connect();
+                return true;
+            })));
+
+            long modelStart = System.nanoTime();
             RobotModel robot = new RobotModel(imu, tcp, udp);
+            // Settings are saved per robot address unless -Drobot.profile names the profile
+            if (System.getProperty("robot.profile") == null) {
+                robot.getSettings().setProfile(serverIp);
+            }
+            phases.put("model", CompletableFuture.completedFuture(
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - modelStart)));
+            phases.put("codecs", startup.submit(timed(() -> {
+                robot.warmUp();
+                return true;
+            })));
+
+            Map<String, Long> timings = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Long>> phase : phases.entrySet()) {
+                try {
+                    timings.put(phase.getKey(), phase.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    timings.put(phase.getKey(), -1L);
+                }
+            }
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // Report once everything is measured; registering the gauges is not free
+            StringBuilder report = new StringBuilder("Startup " + serverIp + ":");
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                report.append(' ').append(timing.getKey()).append('=');
+                if (timing.getValue() < 0) {
+                    report.append("pending");
+                } else {
+                    report.append(timing.getValue()).append("ms");
+                    Metrics.gauge("startup." + timing.getKey() + ".millis").set(timing.getValue());
+                }
+            }
+            Metrics.gauge("startup.ready.millis").set(totalMillis);
+            report.append(" ready=").append(totalMillis).append("ms");
+            System.out.println(report);
+            RobotLogger.info(report.toString());
             return robot;
         }
         catch (Exception e)
         {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
             try {
-                if (tcp != null && tcp.isConnected())
+                if (tcp != null)
                     tcp.disconnect();
                 if (udp != null && udp.isConnected())
                     udp.disconnect();
             } catch (IOException ioe){
                 ioe.printStackTrace();
             } finally {
-                e.printStackTrace();
+                cause.printStackTrace();
             }
         }
+        finally {
+            startup.shutdownNow();
+        }
         return null;
     }
 
-    
-    private static boolean isServerReachable(String ipAddress) {
-        final int CONNECTION_TIMEOUT = 5000;
-        try {
-            return InetAddress.getByName(ipAddress).isReachable(CONNECTION_TIMEOUT);
-        } catch (IOException e) {
-            System.err.println("Error checking server reachability: " + e.getMessage());
-            return false;
-        }
+    // Elapsed millis of the phase, or -1 if it ran out of time
+    private static Callable<Long> timed(Callable<Boolean> phase) {
+        return () -> {
+            long start = System.nanoTime();
+            boolean done = phase.call();
+            return done ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : -1L;
+        };
     }
 }
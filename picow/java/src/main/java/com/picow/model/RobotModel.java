@@ -1,71 +1,263 @@
 package com.picow.model;
 
 import java.io.IOException;
-import java.util.concurrent.Executors;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import com.picow.RobotLogger;
+import com.picow.metrics.Allocations;
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
 import com.picow.model.commands.MotorCommand;
+import com.picow.model.commands.MotorFrameHistory;
+import com.picow.model.commands.CommandJsonEncoder;
 import com.picow.model.commands.SensorPullCommand;
 import com.picow.model.commands.SensorPullCommandJsonResponse;
+import com.picow.model.commands.TrajectoryCommand;
 import com.picow.model.sensors.Imu;
-import com.picow.network.TcpTransport;
-import com.picow.network.UdpTransport;
+import com.picow.network.DatagramTransport;
+import com.picow.network.StreamTransport;
+import com.picow.time.Clock;
+import com.picow.time.SystemClock;
 
 public class RobotModel {
+    public static final int SENSOR_POLL_PERIOD_MILLIS = 50;  // 20Hz
+    private static final String UDP_STATS = "udp_stats";
+    public static final int MOTOR_SEND_PERIOD_MILLIS = 10;   // 100Hz
+    public static final int MOTOR_DRAIN_PERIOD_MILLIS = 20;  // hand-off of sent frames to listeners and logs
+    public static final int UDP_STATS_POLL_INTERVAL = 20;    // firmware UDP counters every 20th sensor poll
+
     // Sensors
     private final Imu imu;
     private final MotorCommandBus commandBus;
     private final int numberOfMotors = 4;
     
     // Network transports
-    private final TcpTransport tcp;
-    private final UdpTransport udp;
+    private final StreamTransport tcp;
+    private final DatagramTransport udp;
     
     // Thread management
+    private final String name;
+    private final Clock clock;
     private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final MotorDispatcher motorDispatcher; // own motor thread, unless on a shared scheduler
+    private final MotorFrameHistory frameHistory;
+    private final EmergencyStop emergencyStop;
+    private final byte[] motorFrame = new byte[MotorFrameHistory.MAX_PACKET_BYTES]; // shared scheduler path
+    private final byte[] pollFrame = new byte[CommandJsonEncoder.MAX_COMMAND_BYTES];
+    private volatile long sensorPollPeriodNanos;
+    private volatile long motorSendPeriodNanos; // shared scheduler path
+    private final RobotSettings settings;
+    private long sensorPollCount;
+    private volatile long sampleAgeNanos;
+    private volatile MotorCommand lastSentCommand; // shared scheduler path
+    private final Odometry odometry = new Odometry();
     private final AtomicBoolean running = new AtomicBoolean(false);
+    // Replaced when a rate changes; guarded by scheduleLock
+    private final Object scheduleLock = new Object();
+    private ScheduledFuture<?> pollTask;
+    private ScheduledFuture<?> sendTask;
+    private ScheduledFuture<?> drainTask;
+    private ScheduledFuture<?> liveStateTask;
+    private volatile LiveStateExport liveState;
     private Thread sensorThread;
     private final Gson gson = new Gson();
 
-    public RobotModel(Imu imu, TcpTransport tcpTransport, UdpTransport udpTransport) {
+    // Metrics
+    private final LatencyHistogram pollLatency;
+    private final LatencyHistogram sendLatency;
+    private final LatencyHistogram processLatency;
+    private final LatencyHistogram rtt;
+    // Bytes allocated per run of each scheduled task, see Allocations
+    private final LatencyHistogram pollAlloc;
+    private final LatencyHistogram sendAlloc;
+    private final LatencyHistogram processAlloc;
+    private final LatencyHistogram drainAlloc;
+    private final Counter motorFrames;
+    private final Counter sensorPolls;
+    private final Counter telemetrySamples;
+    private final Counter pollErrors;
+    private final Counter sendErrors;
+    private final Counter sensorErrors;
+
+    // Observers, e.g. live plots; called on the thread that produced the data
+    private final List<Consumer<Imu.Data>> imuListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<MotorCommand>> motorCommandListeners = new CopyOnWriteArrayList<>();
+
+    public RobotModel(Imu imu, StreamTransport tcpTransport, DatagramTransport udpTransport) {
+        this(null, imu, tcpTransport, udpTransport, null);
+    }
+
+    // A named robot on a shared scheduler, as used by fleets; the scheduler is not shut down by stop()
+    public RobotModel(String name, Imu imu, StreamTransport tcpTransport, DatagramTransport udpTransport,
+                      ScheduledExecutorService scheduler) {
+        this(name, imu, tcpTransport, udpTransport, scheduler, SystemClock.INSTANCE);
+    }
+
+    // On a VirtualClock motor frames go out from the poll scheduler, as on a shared one, rather than a thread
+    public RobotModel(String name, Imu imu, StreamTransport tcpTransport, DatagramTransport udpTransport,
+                      ScheduledExecutorService scheduler, Clock clock) {
+        this.name = name;
+        this.clock = clock;
         this.imu = imu;
-        this.commandBus = new MotorCommandBus();
+        this.commandBus = new MotorCommandBus(metricName("bus"));
         this.tcp = tcpTransport;
         this.udp = udpTransport;
-        this.executor = Executors.newScheduledThreadPool(2);
+        this.ownsExecutor = scheduler == null;
+        this.executor = scheduler != null ? scheduler : clock.newScheduler("robot-poll");
+        // -Drobot.udpRedundancy=K sends the last K frames in every datagram
+        this.frameHistory = new MotorFrameHistory(Integer.getInteger("robot.udpRedundancy", 1));
+        this.emergencyStop = new EmergencyStop(udp, tcp, executor, this);
+        // -Drobot.sensorHz raises the IMU poll rate for closed-loop controllers
+        this.sensorPollPeriodNanos = MotorDispatcher.periodForHz(
+            Integer.getInteger("robot.sensorHz", 1000 / SENSOR_POLL_PERIOD_MILLIS));
+        // A standalone robot sends motor frames from a dedicated thread, whatever the TCP side is doing;
+        // -Drobot.motorHz overrides the default 100 Hz
+        this.motorSendPeriodNanos = MotorDispatcher.periodForHz(
+            Integer.getInteger("robot.motorHz", 1000 / MOTOR_SEND_PERIOD_MILLIS));
+        this.motorDispatcher = scheduler != null || clock.isVirtual() ? null : new MotorDispatcher(commandBus, emergencyStop, udp, frameHistory,
+            motorSendPeriodNanos, this);
+
+        pollLatency = Metrics.histogram(metricName("robot.pollSensors.nanos"));
+        sendLatency = Metrics.histogram(metricName("robot.sendMotorCommands.nanos"));
+        processLatency = Metrics.histogram(metricName("robot.processSensorData.nanos"));
+        rtt = Metrics.histogram(metricName("tcp.rtt.nanos"));
+        pollAlloc = Metrics.histogram(metricName("robot.pollSensors.alloc.bytes"));
+        sendAlloc = Metrics.histogram(metricName("robot.sendMotorCommands.alloc.bytes"));
+        processAlloc = Metrics.histogram(metricName("robot.processSensorData.alloc.bytes"));
+        drainAlloc = Metrics.histogram(metricName("robot.drainMotorFrames.alloc.bytes"));
+        motorFrames = Metrics.counter(metricName("robot.motorFrames"));
+        sensorPolls = Metrics.counter(metricName("robot.sensorPolls"));
+        telemetrySamples = Metrics.counter(metricName("robot.telemetrySamples"));
+        pollErrors = Metrics.counter(metricName("robot.pollSensors.errors"));
+        sendErrors = Metrics.counter(metricName("robot.sendMotorCommands.errors"));
+        sensorErrors = Metrics.counter(metricName("robot.sensorData.errors"));
+        settings = new RobotSettings(this, tcp);
+    }
+
+    // Unnamed robots keep the plain metric names; fleet robots get a per-robot prefix
+    public String metricName(String metric) {
+        return name == null ? metric : "fleet." + name + "." + metric;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    // Rates and link settings, tunable over JMX and saved per robot
+    public RobotSettings getSettings() {
+        return settings;
+    }
+
+    // Publishes live state into a memory-mapped file for other processes, see LiveStateExport;
+    // -Drobot.liveState=path does the same on start (fleet robots get ".name" appended)
+    public synchronized void exportLiveState(Path path) throws IOException {
+        if (liveState != null) {
+            liveState.close();
+        }
+        liveState = new LiveStateExport(path, this);
+        if (motorDispatcher != null) {
+            motorDispatcher.setLiveState(liveState);
+        }
+        if (running.get() && liveStateTask == null) {
+            scheduleLiveState();
+        }
+    }
+
+    public LiveStateExport getLiveState() {
+        return liveState;
+    }
+
+    private void scheduleLiveState() {
+        liveStateTask = executor.scheduleAtFixedRate(() -> liveState.writeSourcesAndLink(commandBus,
+            clock.currentTimeMillis(), sampleAgeNanos), 0, LiveStateExport.PERIOD_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     public void start() {
         if (running.get()) return;
+        settings.loadProfile();
         running.set(true);
+
+        String liveStatePath = System.getProperty("robot.liveState");
+        if (liveStatePath != null && liveState == null) {
+            try {
+                exportLiveState(Paths.get(name == null ? liveStatePath : liveStatePath + "." + name));
+            } catch (IOException e) {
+                System.err.println("Error opening live state file " + liveStatePath + ": " + e.getMessage());
+            }
+        }
+        if (liveState != null) {
+            scheduleLiveState();
+        }
         
-        // Start TCP polling at 20Hz
-        executor.scheduleAtFixedRate(this::pollSensors, 0, 50, TimeUnit.MILLISECONDS);
-        
-        // Start UDP command sending at 100Hz
-        executor.scheduleAtFixedRate(this::sendMotorCommands, 0, 10, TimeUnit.MILLISECONDS);
+        synchronized (scheduleLock) {
+            // Start TCP polling at 20Hz unless overridden
+            pollTask = executor.scheduleAtFixedRate(this::pollSensors, 0, sensorPollPeriodNanos, TimeUnit.NANOSECONDS);
+
+            // Start UDP command sending at 100Hz
+            if (motorDispatcher != null) {
+                motorDispatcher.start();
+                drainTask = executor.scheduleAtFixedRate(this::drainMotorFrames, MOTOR_DRAIN_PERIOD_MILLIS,
+                    MOTOR_DRAIN_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            } else {
+                sendTask = executor.scheduleAtFixedRate(this::sendMotorCommands, 0, motorSendPeriodNanos, TimeUnit.NANOSECONDS);
+            }
+        }
         
-        // Start sensor data reading thread
-        startSensorThread();
+        // Telemetry is pushed by event-driven transports; otherwise poll it on a thread
+        if (tcp.supportsPush()) {
+            tcp.setLineHandler(this::processSensorData);
+        } else {
+            startSensorThread();
+        }
     }
 
     public void stop() {
         if (!running.get()) return;
         running.set(false);
         
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        if (motorDispatcher != null) {
+            motorDispatcher.stop();
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
                 executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            synchronized (scheduleLock) {
+                pollTask.cancel(false);
+                sendTask.cancel(false);
+            }
+            if (liveStateTask != null) {
+                liveStateTask.cancel(false);
             }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
-            Thread.currentThread().interrupt();
         }
+        liveStateTask = null;
         
         if (sensorThread != null) {
             sensorThread.interrupt();
@@ -93,29 +285,157 @@ public class RobotModel {
     private void pollSensors() {
         if (!running.get()) return;
         
+        long start = System.nanoTime();
+        long allocStart = Allocations.threadBytes();
         try {
-            long ts = System.currentTimeMillis();
+            emergencyStop.refresh();
+            long ts = clock.currentTimeMillis();
+            // A new command per poll: the onChange log policy tells them apart by identity
             SensorPullCommand command = new SensorPullCommand("imu", 0, ts);
-            String cmd = gson.toJson(command);
-            tcp.send(cmd);
-            RobotLogger.logSensorPullCommand(command);
+            int length = CommandJsonEncoder.encodeSensorPull(command, pollFrame, 0);
+            tcp.send(pollFrame, length);
+            sensorPolls.increment();
+            RobotLogger.logSensorPullCommand(command, pollFrame, length - 1);
+            if (++sensorPollCount % UDP_STATS_POLL_INTERVAL == 0) {
+                tcp.send(pollFrame, CommandJsonEncoder.encodeSensorPull(new SensorPullCommand(UDP_STATS, 0, ts), pollFrame, 0));
+            }
         } catch (Exception e) {
+            pollErrors.increment();
             System.err.println("Error polling sensors: " + e.getMessage());
+        } finally {
+            pollLatency.recordSince(start);
+            pollAlloc.record(Allocations.threadBytes() - allocStart);
         }
     }
 
     private void sendMotorCommands() {
         if (!running.get()) return;
         
+        long start = System.nanoTime();
+        long allocStart = Allocations.threadBytes();
         try {
-            long ts = System.currentTimeMillis();
-            MotorCommand command = commandBus.getHighestPriorityCommand(ts);
-            String cmd = gson.toJson(command);
-            udp.send(cmd);
-            RobotLogger.logMotorCommand(cmd);
+            long ts = clock.currentTimeMillis();
+            boolean latched = emergencyStop.isLatched();
+            MotorCommand command = latched ? emergencyStop.stopCommand()
+                : commandBus.getHighestPriorityCommand(ts);
+            int length = frameHistory.encode(command, ts, motorFrame);
+            if (latched) {
+                // Stop frames never carry a plan, so the flag fits; any one of them re-latches the firmware
+                length = EmergencyStop.flag(motorFrame, length);
+            }
+            udp.send(motorFrame, length);
+            boolean sampled = command instanceof TrajectoryCommand;
+            if (sampled) {
+                command = new MotorCommand(frameHistory.copyLastPwm(), ts);
+            }
+            lastSentCommand = command;
+            LiveStateExport export = liveState;
+            if (export != null) {
+                export.writeMotor(command, ts, latched);
+            }
+            motorFrames.increment();
+            for (Consumer<MotorCommand> listener : motorCommandListeners) {
+                listener.accept(command);
+            }
+            if (!sampled && CommandJsonEncoder.supports(command)) {
+                // The frame starts with the command's own JSON: log the bytes that went out
+                RobotLogger.logMotorCommand(command, motorFrame, frameHistory.getLastCommandLength());
+            } else {
+                RobotLogger.logMotorCommand(command);
+            }
         } catch (Exception e) {
+            sendErrors.increment();
             System.err.println("Error sending motor commands: " + e.getMessage());
+        } finally {
+            sendLatency.recordSince(start);
+            sendAlloc.record(Allocations.threadBytes() - allocStart);
+        }
+    }
+
+    // Listeners and logging for frames sent by the dispatcher, off the motor thread
+    private void drainMotorFrames() {
+        long allocStart = Allocations.threadBytes();
+        motorDispatcher.drain(sent -> {
+            MotorCommand command = sent.command;
+            for (Consumer<MotorCommand> listener : motorCommandListeners) {
+                listener.accept(command);
+            }
+            if (sent.jsonLength > 0) {
+                // Log the bytes that went out, as sendMotorCommands does
+                RobotLogger.logMotorCommand(command, sent.json, sent.jsonLength);
+            } else {
+                RobotLogger.logMotorCommand(command);
+            }
+        });
+        drainAlloc.record(Allocations.threadBytes() - allocStart);
+    }
+
+    // Stops the motors at once and keeps them stopped, whatever any controller asks, until released
+    public void emergencyStop(String source) {
+        emergencyStop.trigger(source);
+    }
+
+    public void releaseEmergencyStop() {
+        emergencyStop.release();
+    }
+
+    public EmergencyStop getEmergencyStop() {
+        return emergencyStop;
+    }
+
+    // Frames per UDP datagram, 1..MotorFrameHistory.MAX_REDUNDANCY
+    public void setUdpRedundancy(int frames) {
+        frameHistory.setRedundancy(frames);
+    }
+
+    public int getUdpRedundancy() {
+        return frameHistory.getRedundancy();
+    }
+
+    // Motor frames per second, changed while running without skipping or doubling a frame
+    public void setMotorSendRate(int hz) {
+        long period = MotorDispatcher.periodForHz(hz);
+        if (motorDispatcher != null) {
+            motorDispatcher.setPeriodNanos(period);
+            return;
         }
+        synchronized (scheduleLock) {
+            motorSendPeriodNanos = period;
+            sendTask = reschedule(sendTask, this::sendMotorCommands, period);
+        }
+    }
+
+    // Sensor polls per second, changed like the motor rate
+    public void setSensorPollRate(int hz) {
+        long period = MotorDispatcher.periodForHz(hz);
+        synchronized (scheduleLock) {
+            sensorPollPeriodNanos = period;
+            pollTask = reschedule(pollTask, this::pollSensors, period);
+        }
+    }
+
+    public int getSensorPollRate() {
+        return (int) (TimeUnit.SECONDS.toNanos(1) / sensorPollPeriodNanos);
+    }
+
+    // The next run stays when it was due, or comes sooner for a shorter period; the new period follows from there
+    private ScheduledFuture<?> reschedule(ScheduledFuture<?> task, Runnable command, long periodNanos) {
+        if (task == null || task.isCancelled() || !running.get()) {
+            return task;
+        }
+        long next = Math.max(0, Math.min(task.getDelay(TimeUnit.NANOSECONDS), periodNanos));
+        task.cancel(false);
+        return executor.scheduleAtFixedRate(command, next, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Estimated age of the latest IMU sample when it arrived
+    public long getSampleAgeNanos() {
+        return sampleAgeNanos;
+    }
+
+    public int getMotorSendRate() {
+        long period = motorDispatcher != null ? motorDispatcher.getPeriodNanos() : motorSendPeriodNanos;
+        return (int) (TimeUnit.SECONDS.toNanos(1) / period);
     }
 
     private void startSensorThread() {
@@ -131,6 +451,7 @@ public class RobotModel {
                     Thread.currentThread().interrupt();
                     break;
                 } catch (Exception e) {
+                    sensorErrors.increment();
                     System.err.println("Error reading sensor data: " + e.getMessage());
                 }
             }
@@ -139,20 +460,89 @@ public class RobotModel {
         sensorThread.start();
     }
 
-    private void processSensorData(String data) {
+    // Package-private for benchmarks
+    void processSensorData(String data) {
+        long start = System.nanoTime();
+        long allocStart = Allocations.threadBytes();
         try {
             SensorPullCommandJsonResponse response = gson.fromJson(data, SensorPullCommandJsonResponse.class);
             if (response.type.equals("imu")) {
+                // The firmware echoes the poll, so its timestamp gives the round trip
+                long roundTrip = (clock.currentTimeMillis() - response.timestamp) * 1_000_000L;
+                rtt.record(roundTrip);
                 // Process sensor data and update IMU
-                if (response.error == null)
-                    imu.set(gson.fromJson(response.data, Imu.Data.class));
+                if (response.error == null) {
+                    Imu.Data sample = gson.fromJson(response.data, Imu.Data.class);
+                    // The firmware reads the IMU when the poll arrives, about half a round trip ago
+                    sampleAgeNanos = roundTrip / 2;
+                    imu.set(sample);
+                    odometry.update(lastSentPwm(), sample.getGyro(2), clock.nanoTime());
+                    LiveStateExport export = liveState;
+                    if (export != null) {
+                        export.writeImu(sample, clock.currentTimeMillis(), sampleAgeNanos);
+                    }
+                    telemetrySamples.increment();
+                    for (Consumer<Imu.Data> listener : imuListeners) {
+                        listener.accept(sample);
+                    }
+                }
                 RobotLogger.logTelemetry(response);
+            } else if (response.type.equals(EmergencyStop.ESTOP) && response.error == null) {
+                emergencyStop.acknowledge();
+            } else if (response.type.equals(UDP_STATS) && response.error == null) {
+                // Firmware's view of the motor link; older firmware answers with an error
+                JsonObject stats = response.data.getAsJsonObject();
+                for (String key : stats.keySet()) {
+                    Metrics.gauge(metricName("firmware.udp." + key)).set(stats.get(key).getAsLong());
+                }
             }
         } catch (Exception e) {
+            sensorErrors.increment();
             System.err.println("Error processing sensor data: " + e.getMessage());
+        } finally {
+            processLatency.recordSince(start);
+            processAlloc.record(Allocations.threadBytes() - allocStart);
         }
     }
 
+    // Runs each message type through the codecs once so the first real frames skip class loading and adapter lookup
+    public void warmUp() {
+        gson.toJson(new MotorCommand(new int[numberOfMotors], 0));
+        gson.toJson(new SensorPullCommand("imu", 0, 0));
+        SensorPullCommandJsonResponse response = gson.fromJson(
+            "{\"type\":\"imu\",\"id\":0,\"timestamp\":0,\"error\":null,"
+            + "\"data\":{\"accel_g\":[0,0,1],\"gyro_dps\":[0,0,0],\"temp_c\":25}}",
+            SensorPullCommandJsonResponse.class);
+        gson.fromJson(response.data, Imu.Data.class);
+    }
+
+    public void addImuListener(Consumer<Imu.Data> listener) {
+        imuListeners.add(listener);
+    }
+
+    public void removeImuListener(Consumer<Imu.Data> listener) {
+        imuListeners.remove(listener);
+    }
+
+    // Called with every sent command; it may be reused once the listener returns, so copy what is kept
+    public void addMotorCommandListener(Consumer<MotorCommand> listener) {
+        motorCommandListeners.add(listener);
+    }
+
+    public void removeMotorCommandListener(Consumer<MotorCommand> listener) {
+        motorCommandListeners.remove(listener);
+    }
+
+    // Dead-reckoned pose, updated with every IMU sample from the last PWM sent
+    public Odometry getOdometry() {
+        return odometry;
+    }
+
+    private int[] lastSentPwm() {
+        MotorCommand command = motorDispatcher != null ? motorDispatcher.getLastSent() : lastSentCommand;
+        return command == null ? null : command.pwm;
+    }
+
     public Imu.Data getImuData() {
         return imu.read();
     }
@@ -169,7 +559,38 @@ public class RobotModel {
             pwm[i] = Math.min(65535, Math.max(-65535, (int)(655.35 * powers[i])));
         }
 
-        MotorCommand command = new MotorCommand(pwm, System.currentTimeMillis());
+        MotorCommand command = new MotorCommand(pwm, clock.currentTimeMillis());
+        commandBus.updateCommand(controller, command);
+    }
+
+    // For controllers that reuse their commands instead of allocating one per call; pwm is not
+    // copied, so the caller must not modify a command while the dispatcher may still be sending it
+    public void submitMotorCommand(MotorCommand command, String controller) {
+        if (command.pwm == null || command.pwm.length != numberOfMotors) {
+            throw new IllegalArgumentException("pwm setting is null or mismatching motor numbers.");
+        }
         commandBus.updateCommand(controller, command);
     }
+
+    // Submits wheel setpoints at startMillis + offsetsMillis[i] (powers -100 to 100), e.g. the next
+    // 200 ms of an autonomous path. The firmware plays them out on its own clock and interpolates,
+    // so link jitter does not reach the wheels; a new trajectory or a higher-priority source replaces it.
+    public void followTrajectory(long startMillis, long[] offsetsMillis, double[][] powers, String controller) {
+        if (offsetsMillis.length != powers.length) {
+            throw new IllegalArgumentException("One set of powers per offset required.");
+        }
+        long[] times = new long[offsetsMillis.length];
+        int[][] points = new int[powers.length][];
+        for (int i = 0; i < powers.length; i++) {
+            if (powers[i] == null || powers[i].length != numberOfMotors) {
+                throw new IllegalArgumentException("powers setting is null or mismatching motor numbers.");
+            }
+            times[i] = startMillis + offsetsMillis[i];
+            points[i] = new int[numberOfMotors];
+            for (int m = 0; m < numberOfMotors; m++) {
+                points[i][m] = Math.min(65535, Math.max(-65535, (int)(655.35 * powers[i][m])));
+            }
+        }
+        commandBus.updateCommand(controller, new TrajectoryCommand(times, points, clock.currentTimeMillis()));
+    }
 }
@@ -0,0 +1,313 @@
+package com.picow.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+import javax.management.ObjectName;
+
+import com.picow.RobotLogger;
+import com.picow.metrics.Metrics;
+import com.picow.network.NioTcpTransport;
+import com.picow.network.StreamTransport;
+import com.picow.network.TcpTransport;
+
+/**
+ * A robot's control rates and link settings, live-tunable as the MBean
+ * com.picow:type=Settings,name=robot (or the fleet robot's name). Rate
+ * changes reschedule the running loops without skipping or doubling a frame.
+ * saveProfile() writes the current values to profiles/PROFILE.properties
+ * (-Drobot.profileDir), and RobotModel.start() applies the saved profile if
+ * there is one; the profile is named after the fleet robot, or after the
+ * robot's address (-Drobot.profile overrides). TCP settings not offered by
+ * the transport read as -1.
+ */
+public class RobotSettings implements RobotSettingsMBean {
+    private static final String SENSOR_HZ = "sensorHz";
+    private static final String MOTOR_HZ = "motorHz";
+    private static final String UDP_REDUNDANCY = "udpRedundancy";
+    private static final String TCP_INITIAL_BACKOFF = "tcp.initialBackoffMillis";
+    private static final String TCP_MAX_BACKOFF = "tcp.maxBackoffMillis";
+    private static final String TCP_CONNECT_TIMEOUT = "tcp.connectTimeoutMillis";
+    private static final String TCP_MAX_QUEUED = "tcp.maxQueuedSends";
+    private static final String CONTROLLER_PREFIX = "controller.";
+    private static final String HZ_SUFFIX = ".hz";
+
+    private static final class ControllerRate {
+        final IntSupplier get;
+        final IntConsumer set;
+
+        ControllerRate(IntSupplier get, IntConsumer set) {
+            this.get = get;
+            this.set = set;
+        }
+    }
+
+    private final RobotModel robot;
+    private final StreamTransport tcp;
+    private final Map<String, ControllerRate> controllers = new TreeMap<>();
+    // Controller rates from the loaded profile, applied when the controller starts
+    private final Map<String, Integer> savedControllerRates = new TreeMap<>();
+    private volatile String profile;
+
+    RobotSettings(RobotModel robot, StreamTransport tcp) {
+        this.robot = robot;
+        this.tcp = tcp;
+        this.profile = robot.getName() != null ? robot.getName() : System.getProperty("robot.profile", "robot");
+        Metrics.registerMBean("com.picow:type=Settings,name="
+            + ObjectName.quote(robot.getName() != null ? robot.getName() : "robot"), this);
+    }
+
+    @Override
+    public int getSensorPollRate() {
+        return robot.getSensorPollRate();
+    }
+
+    @Override
+    public void setSensorPollRate(int hz) {
+        robot.setSensorPollRate(hz);
+    }
+
+    @Override
+    public int getMotorSendRate() {
+        return robot.getMotorSendRate();
+    }
+
+    @Override
+    public void setMotorSendRate(int hz) {
+        robot.setMotorSendRate(hz);
+    }
+
+    @Override
+    public int getUdpRedundancy() {
+        return robot.getUdpRedundancy();
+    }
+
+    @Override
+    public void setUdpRedundancy(int frames) {
+        robot.setUdpRedundancy(frames);
+    }
+
+    @Override
+    public long getTcpInitialBackoffMillis() {
+        if (tcp instanceof TcpTransport) {
+            return ((TcpTransport) tcp).getInitialBackoffMillis();
+        }
+        return tcp instanceof NioTcpTransport ? ((NioTcpTransport) tcp).getInitialBackoffMillis() : -1;
+    }
+
+    @Override
+    public void setTcpInitialBackoffMillis(long millis) {
+        setBackoffMillis(millis, Math.max(millis, getTcpMaxBackoffMillis()));
+    }
+
+    @Override
+    public long getTcpMaxBackoffMillis() {
+        if (tcp instanceof TcpTransport) {
+            return ((TcpTransport) tcp).getMaxBackoffMillis();
+        }
+        return tcp instanceof NioTcpTransport ? ((NioTcpTransport) tcp).getMaxBackoffMillis() : -1;
+    }
+
+    @Override
+    public void setTcpMaxBackoffMillis(long millis) {
+        setBackoffMillis(Math.min(millis, getTcpInitialBackoffMillis()), millis);
+    }
+
+    private void setBackoffMillis(long initialMillis, long maxMillis) {
+        if (tcp instanceof TcpTransport) {
+            ((TcpTransport) tcp).setBackoffMillis(initialMillis, maxMillis);
+        } else if (tcp instanceof NioTcpTransport) {
+            ((NioTcpTransport) tcp).setBackoffMillis(initialMillis, maxMillis);
+        } else {
+            throw unsupported("backoff");
+        }
+    }
+
+    @Override
+    public int getTcpConnectTimeoutMillis() {
+        return tcp instanceof TcpTransport ? ((TcpTransport) tcp).getConnectTimeoutMillis() : -1;
+    }
+
+    @Override
+    public void setTcpConnectTimeoutMillis(int millis) {
+        if (!(tcp instanceof TcpTransport)) {
+            throw unsupported("connect timeout");
+        }
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Connect timeout must be positive: " + millis);
+        }
+        ((TcpTransport) tcp).setConnectTimeoutMillis(millis);
+    }
+
+    @Override
+    public int getTcpMaxQueuedSends() {
+        return tcp instanceof TcpTransport ? ((TcpTransport) tcp).getMaxQueuedSends() : -1;
+    }
+
+    @Override
+    public void setTcpMaxQueuedSends(int max) {
+        if (!(tcp instanceof TcpTransport)) {
+            throw unsupported("send queue");
+        }
+        ((TcpTransport) tcp).setMaxQueuedSends(max);
+    }
+
+    private UnsupportedOperationException unsupported(String setting) {
+        return new UnsupportedOperationException(tcp.getClass().getSimpleName() + " has no " + setting + " setting");
+    }
+
+    // Called by a controller as it starts; takes the rate saved in the profile, if any
+    public synchronized void addControllerRate(String controller, IntSupplier get, IntConsumer set) {
+        controllers.put(controller, new ControllerRate(get, set));
+        Integer saved = savedControllerRates.get(controller);
+        if (saved != null) {
+            set.accept(saved);
+        }
+    }
+
+    public synchronized void removeControllerRate(String controller) {
+        controllers.remove(controller);
+    }
+
+    // "name.id=hz" for every running controller
+    @Override
+    public synchronized String getControllerRates() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, ControllerRate> entry : controllers.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue().get.getAsInt());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized void setControllerRate(String controller, int hz) {
+        ControllerRate rate = controllers.get(controller);
+        if (rate == null) {
+            throw new IllegalArgumentException("No running controller " + controller + ", have: " + controllers.keySet());
+        }
+        rate.set.accept(hz);
+    }
+
+    @Override
+    public String getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProfile(String profile) {
+        if (profile == null || profile.isEmpty()) {
+            throw new IllegalArgumentException("Empty profile name");
+        }
+        this.profile = profile;
+    }
+
+    @Override
+    public String getProfilePath() {
+        return path().toAbsolutePath().toString();
+    }
+
+    private Path path() {
+        // Addresses and robot names make file names, anything else is replaced
+        String file = profile.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties";
+        return Paths.get(System.getProperty("robot.profileDir", "profiles"), file);
+    }
+
+    // Returns the file written
+    @Override
+    public synchronized String saveProfile() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(SENSOR_HZ, Integer.toString(getSensorPollRate()));
+        properties.setProperty(MOTOR_HZ, Integer.toString(getMotorSendRate()));
+        properties.setProperty(UDP_REDUNDANCY, Integer.toString(getUdpRedundancy()));
+        putIfSupported(properties, TCP_INITIAL_BACKOFF, getTcpInitialBackoffMillis());
+        putIfSupported(properties, TCP_MAX_BACKOFF, getTcpMaxBackoffMillis());
+        putIfSupported(properties, TCP_CONNECT_TIMEOUT, getTcpConnectTimeoutMillis());
+        putIfSupported(properties, TCP_MAX_QUEUED, getTcpMaxQueuedSends());
+        // Saved rates of controllers not running now are kept
+        for (Map.Entry<String, ControllerRate> entry : controllers.entrySet()) {
+            savedControllerRates.put(entry.getKey(), entry.getValue().get.getAsInt());
+        }
+        for (Map.Entry<String, Integer> entry : savedControllerRates.entrySet()) {
+            properties.setProperty(CONTROLLER_PREFIX + entry.getKey() + HZ_SUFFIX, entry.getValue().toString());
+        }
+
+        Path path = path();
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(path)) {
+            properties.store(out, "Robot settings profile " + profile);
+        }
+        RobotLogger.info("Saved settings profile {} to {}", profile, path);
+        return path.toAbsolutePath().toString();
+    }
+
+    private static void putIfSupported(Properties properties, String key, long value) {
+        if (value >= 0) {
+            properties.setProperty(key, Long.toString(value));
+        }
+    }
+
+    // Applies the saved profile; false if there is none. Bad values are reported and skipped.
+    @Override
+    public synchronized boolean loadProfile() {
+        Path path = path();
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.err.println("Error reading settings profile " + path + ": " + e.getMessage());
+            return false;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            try {
+                apply(key, value);
+            } catch (RuntimeException e) {
+                System.err.println("Error applying " + key + "=" + value + " from " + path + ": " + e.getMessage());
+            }
+        }
+        RobotLogger.info("Loaded settings profile {} from {}", profile, path);
+        return true;
+    }
+
+    private void apply(String key, String value) {
+        switch (key) {
+            case SENSOR_HZ: setSensorPollRate(Integer.parseInt(value)); break;
+            case MOTOR_HZ: setMotorSendRate(Integer.parseInt(value)); break;
+            case UDP_REDUNDANCY: setUdpRedundancy(Integer.parseInt(value)); break;
+            case TCP_INITIAL_BACKOFF: setTcpInitialBackoffMillis(Long.parseLong(value)); break;
+            case TCP_MAX_BACKOFF: setTcpMaxBackoffMillis(Long.parseLong(value)); break;
+            case TCP_CONNECT_TIMEOUT: setTcpConnectTimeoutMillis(Integer.parseInt(value)); break;
+            case TCP_MAX_QUEUED: setTcpMaxQueuedSends(Integer.parseInt(value)); break;
+            default:
+                if (key.startsWith(CONTROLLER_PREFIX) && key.endsWith(HZ_SUFFIX)) {
+                    String controller = key.substring(CONTROLLER_PREFIX.length(), key.length() - HZ_SUFFIX.length());
+                    int hz = Integer.parseInt(value);
+                    if (hz <= 0) {
+                        throw new IllegalArgumentException("Rate must be positive: " + hz);
+                    }
+                    savedControllerRates.put(controller, hz);
+                    ControllerRate rate = controllers.get(controller);
+                    if (rate != null) {
+                        rate.set.accept(hz);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unknown setting");
+                }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.picow.model;
+
+import java.io.IOException;
+
+public interface RobotSettingsMBean {
+    int getSensorPollRate();
+    void setSensorPollRate(int hz);
+    int getMotorSendRate();
+    void setMotorSendRate(int hz);
+    int getUdpRedundancy();
+    void setUdpRedundancy(int frames);
+
+    long getTcpInitialBackoffMillis();
+    void setTcpInitialBackoffMillis(long millis);
+    long getTcpMaxBackoffMillis();
+    void setTcpMaxBackoffMillis(long millis);
+    int getTcpConnectTimeoutMillis();
+    void setTcpConnectTimeoutMillis(int millis);
+    int getTcpMaxQueuedSends();
+    void setTcpMaxQueuedSends(int max);
+
+    String getControllerRates();
+    void setControllerRate(String controller, int hz);
+
+    String getProfile();
+    void setProfile(String profile);
+    String getProfilePath();
+    String saveProfile() throws IOException;
+    boolean loadProfile();
+}
@@ -0,0 +1,90 @@
+package com.picow.model.commands;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schema-specific JSON for the Command classes, written into a caller-owned
+ * byte array exactly as Gson writes them: subclass fields first, then
+ * Command's, nulls left out. Nothing is allocated, so the wire frame and the
+ * log record can be built on any thread without Gson. Types that Gson would
+ * escape (anything but letters, digits, '_', '-' and '.') and classes without
+ * a schema here are left to Gson.
+ */
+public final class CommandJsonEncoder {
+    // Longer type names or PWM arrays go through Gson
+    public static final int MAX_TYPE_LENGTH = 32;
+    public static final int MAX_PWM_VALUES = MotorFrameEncoder.MAX_PWM_VALUES;
+    // A motor frame, or a sensor pull with the longest type and a 20-character timestamp
+    public static final int MAX_COMMAND_BYTES = 160;
+
+    private static final byte[] ID = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TYPE = ",\"type\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_AFTER_TYPE = "\",\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = ",\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+
+    private CommandJsonEncoder() {
+    }
+
+    // True if encode() handles the object exactly as Gson would
+    public static boolean supports(Object command) {
+        if (command == null) {
+            return false;
+        }
+        Class<?> type = command.getClass();
+        if (type == MotorCommand.class) {
+            MotorCommand motor = (MotorCommand) command;
+            return "motor".equals(motor.type) && (motor.pwm == null || motor.pwm.length <= MAX_PWM_VALUES);
+        }
+        return type == SensorPullCommand.class && plainType(((SensorPullCommand) command).type);
+    }
+
+    // Writes the command at pos and returns the position after it; check supports() first.
+    // out needs MAX_COMMAND_BYTES from pos.
+    public static int encode(Object command, byte[] out, int pos) {
+        if (command instanceof SensorPullCommand) {
+            return encodeSensorPull((SensorPullCommand) command, out, pos);
+        }
+        MotorCommand motor = (MotorCommand) command;
+        return MotorFrameEncoder.encode(motor.pwm, motor.timestamp, out, pos);
+    }
+
+    // {"id":I,"type":"T","timestamp":TS}
+    public static int encodeSensorPull(SensorPullCommand command, byte[] out, int pos) {
+        pos = put(ID, out, pos);
+        pos = MotorFrameEncoder.putLong(command.id, out, pos);
+        String type = command.type;
+        if (type != null) {
+            pos = put(TYPE, out, pos);
+            for (int i = 0; i < type.length(); i++) {
+                out[pos++] = (byte) type.charAt(i);
+            }
+            pos = put(TIMESTAMP_AFTER_TYPE, out, pos);
+        } else {
+            pos = put(TIMESTAMP, out, pos);
+        }
+        pos = MotorFrameEncoder.putLong(command.timestamp, out, pos);
+        out[pos++] = '}';
+        return pos;
+    }
+
+    private static boolean plainType(String type) {
+        if (type == null) {
+            return true;
+        }
+        if (type.length() > MAX_TYPE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int put(byte[] bytes, byte[] out, int pos) {
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+}
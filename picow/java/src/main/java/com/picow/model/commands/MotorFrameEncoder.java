@@ -0,0 +1,79 @@
+package com.picow.model.commands;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a MotorCommand as JSON into a caller-owned byte array, producing
+ * exactly what Gson would ({"pwm":[..],"type":"motor","timestamp":..}) but
+ * without allocating, so it can run on the motor dispatch thread.
+ */
+public final class MotorFrameEncoder {
+    // The robot and firmware drive four wheels; longer PWM arrays are rejected so the buffers below hold
+    public static final int MAX_PWM_VALUES = 4;
+    // Four 11-character ints and a 20-character timestamp with room to spare
+    public static final int MAX_FRAME_BYTES = 128;
+
+    private static final byte[] PWM_START = "{\"pwm\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TYPE_AFTER_PWM = "],\"type\":\"motor\",\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TYPE_ONLY = "{\"type\":\"motor\",\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+
+    private MotorFrameEncoder() {
+    }
+
+    // Returns the number of bytes written; out must hold MAX_FRAME_BYTES
+    public static int encode(int[] pwm, long timestamp, byte[] out) {
+        return encode(pwm, timestamp, out, 0);
+    }
+
+    // Writes the frame at pos and returns the position after it
+    public static int encode(int[] pwm, long timestamp, byte[] out, int pos) {
+        checkLength(pwm);
+        if (pwm == null) {
+            // Gson leaves out null fields
+            pos = put(TYPE_ONLY, out, pos);
+        } else {
+            pos = put(PWM_START, out, pos);
+            for (int i = 0; i < pwm.length; i++) {
+                if (i > 0) {
+                    out[pos++] = ',';
+                }
+                pos = putLong(pwm[i], out, pos);
+            }
+            pos = put(TYPE_AFTER_PWM, out, pos);
+        }
+        pos = putLong(timestamp, out, pos);
+        out[pos++] = '}';
+        return pos;
+    }
+
+    public static void checkLength(int[] pwm) {
+        if (pwm != null && pwm.length > MAX_PWM_VALUES) {
+            throw new IllegalArgumentException("At most " + MAX_PWM_VALUES + " PWM values per frame, got " + pwm.length);
+        }
+    }
+
+    private static int put(byte[] bytes, byte[] out, int pos) {
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    // Works on the negative value so Long.MIN_VALUE needs no special case
+    public static int putLong(long value, byte[] out, int pos) {
+        long v = value;
+        if (v >= 0) {
+            v = -v;
+        } else {
+            out[pos++] = '-';
+        }
+        int digits = 1;
+        for (long t = v; t <= -10; t /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' - (v % 10));
+            v /= 10;
+        }
+        return end;
+    }
+}
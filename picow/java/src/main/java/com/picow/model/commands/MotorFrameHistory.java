@@ -0,0 +1,164 @@
+package com.picow.model.commands;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Numbers outgoing motor frames and encodes each datagram with the previous
+ * K-1 frames attached, so the firmware can tell which frames a loss burst
+ * swallowed and count those it still received through redundancy:
+ * {"pwm":[..],"type":"motor","timestamp":T,"seq":S,"history":[[S-1,T,p0,p1,p2,p3],..]}
+ * Firmware that predates sequence numbers reads it as a plain motor frame.
+ * A TrajectoryCommand is sent as its current setpoint plus the upcoming points,
+ * relative to now: ..,"plan":[[dtMillis,p0,p1,p2,p3],..]}; the overlapping
+ * plans replace the history there.
+ * Not thread-safe; each sender owns one.
+ */
+public final class MotorFrameHistory {
+    public static final int MAX_REDUNDANCY = 8;
+    // Lookahead per datagram: points up to the horizon plus the one after, to interpolate towards
+    public static final long PLAN_HORIZON_MILLIS = 200;
+    public static final int MAX_PLAN_POINTS = 16;
+    // Newest frame and seq, plus either seven history entries (two longs, four pwm values)
+    // or sixteen plan points (one long, four pwm values); stays under UdpTransport.MAX_UDP_PACKET_SIZE.
+    // Frames and plan points are limited to MotorFrameEncoder.MAX_PWM_VALUES
+    public static final int MAX_PACKET_BYTES = MotorFrameEncoder.MAX_FRAME_BYTES + 32
+        + Math.max((MAX_REDUNDANCY - 1) * 96, MAX_PLAN_POINTS * 50);
+
+    private static final byte[] SEQ = ",\"seq\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HISTORY = ",\"history\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PLAN = ",\"plan\":[".getBytes(StandardCharsets.US_ASCII);
+
+    private final long[] seqs = new long[MAX_REDUNDANCY];
+    private final long[] timestamps = new long[MAX_REDUNDANCY];
+    private final int[][] pwms = new int[MAX_REDUNDANCY][MotorFrameEncoder.MAX_PWM_VALUES];
+    private final int[] pwmLengths = new int[MAX_REDUNDANCY];
+    private int head;   // slot of the newest frame
+    private int count;
+    private long nextSeq = 1;
+    private volatile int redundancy;
+    private int[] sample = new int[4];
+    private int lastCommandLength;
+
+    public MotorFrameHistory(int redundancy) {
+        setRedundancy(redundancy);
+    }
+
+    // Frames per datagram, 1 for no redundancy
+    public void setRedundancy(int redundancy) {
+        if (redundancy < 1 || redundancy > MAX_REDUNDANCY) {
+            throw new IllegalArgumentException("Redundancy must be 1.." + MAX_REDUNDANCY + ", got " + redundancy);
+        }
+        this.redundancy = redundancy;
+    }
+
+    public int getRedundancy() {
+        return redundancy;
+    }
+
+    public long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    // The last datagram starts with the Gson JSON of its command, all but the closing brace
+    // in this many bytes, so it can be logged without encoding it again
+    public int getLastCommandLength() {
+        return lastCommandLength;
+    }
+
+    // Encodes whichever kind of command the bus picked; trajectories are sampled at nowMillis
+    public int encode(MotorCommand command, long nowMillis, byte[] out) {
+        if (!(command instanceof TrajectoryCommand)) {
+            return encode(command.pwm, command.timestamp, out);
+        }
+        TrajectoryCommand trajectory = (TrajectoryCommand) command;
+        if (sample.length != trajectory.points[0].length) {
+            sample = new int[trajectory.points[0].length];
+        }
+        trajectory.sample(nowMillis, sample);
+        int first = trajectory.firstAfter(nowMillis);
+        for (int i = first; i < trajectory.times.length && i - first < MAX_PLAN_POINTS; i++) {
+            MotorFrameEncoder.checkLength(trajectory.points[i]);
+        }
+        int pos = encodeFrame(sample, command.timestamp, out, false);
+        pos = put(PLAN, out, pos);
+        for (int i = first; i < trajectory.times.length && i - first < MAX_PLAN_POINTS; i++) {
+            if (i > first) {
+                out[pos++] = ',';
+            }
+            out[pos++] = '[';
+            pos = MotorFrameEncoder.putLong(trajectory.times[i] - nowMillis, out, pos);
+            for (int value : trajectory.points[i]) {
+                out[pos++] = ',';
+                pos = MotorFrameEncoder.putLong(value, out, pos);
+            }
+            out[pos++] = ']';
+            if (trajectory.times[i] - nowMillis > PLAN_HORIZON_MILLIS) {
+                break;
+            }
+        }
+        out[pos++] = ']';
+        out[pos++] = '}';
+        return pos;
+    }
+
+    // PWM of the most recently encoded frame, e.g. the sampled setpoint of a trajectory
+    public int[] copyLastPwm() {
+        int[] pwm = new int[pwmLengths[head]];
+        System.arraycopy(pwms[head], 0, pwm, 0, pwm.length);
+        return pwm;
+    }
+
+    // Records the frame under the next sequence number and encodes the datagram; returns its length
+    public int encode(int[] pwm, long timestamp, byte[] out) {
+        int pos = encodeFrame(pwm, timestamp, out, true);
+        out[pos++] = '}';
+        return pos;
+    }
+
+    // Everything but the closing brace
+    private int encodeFrame(int[] pwm, long timestamp, byte[] out, boolean withHistory) {
+        // Before anything is recorded, so a rejected frame leaves the history as it was
+        MotorFrameEncoder.checkLength(pwm);
+        head = (head + 1) % MAX_REDUNDANCY;
+        seqs[head] = nextSeq++;
+        timestamps[head] = timestamp;
+        int length = pwm == null ? 0 : pwm.length;
+        for (int i = 0; i < length; i++) {
+            pwms[head][i] = pwm[i];
+        }
+        pwmLengths[head] = length;
+        count = Math.min(count + 1, MAX_REDUNDANCY);
+
+        // The Gson-compatible frame without its closing brace, then the extensions
+        int pos = MotorFrameEncoder.encode(pwm, timestamp, out) - 1;
+        lastCommandLength = pos;
+        pos = put(SEQ, out, pos);
+        pos = MotorFrameEncoder.putLong(seqs[head], out, pos);
+        int extra = withHistory ? Math.min(redundancy, count) - 1 : 0;
+        if (extra > 0) {
+            pos = put(HISTORY, out, pos);
+            for (int k = 1; k <= extra; k++) {
+                int slot = (head - k + MAX_REDUNDANCY) % MAX_REDUNDANCY;
+                if (k > 1) {
+                    out[pos++] = ',';
+                }
+                out[pos++] = '[';
+                pos = MotorFrameEncoder.putLong(seqs[slot], out, pos);
+                out[pos++] = ',';
+                pos = MotorFrameEncoder.putLong(timestamps[slot], out, pos);
+                for (int i = 0; i < pwmLengths[slot]; i++) {
+                    out[pos++] = ',';
+                    pos = MotorFrameEncoder.putLong(pwms[slot][i], out, pos);
+                }
+                out[pos++] = ']';
+            }
+            out[pos++] = ']';
+        }
+        return pos;
+    }
+
+    private static int put(byte[] bytes, byte[] out, int pos) {
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+}
@@ -0,0 +1,71 @@
+package com.picow.model.commands;
+
+/**
+ * A motor command that is a time-stamped sequence of wheel setpoints rather
+ * than a single PWM vector. The sender streams the points ahead of time and the
+ * firmware plays them out on its own clock, interpolating linearly between
+ * them; pwm holds the first point so older firmware still gets a valid frame.
+ * After the last point the robot holds it.
+ */
+public class TrajectoryCommand extends MotorCommand {
+    public final long[] times;    // absolute, System.currentTimeMillis() based, strictly increasing
+    public final int[][] points;  // one PWM vector per time
+
+    public TrajectoryCommand(long[] times, int[][] points, long timestamp) {
+        super(points.length > 0 ? points[0].clone() : null, timestamp);
+        if (times.length != points.length || times.length == 0) {
+            throw new IllegalArgumentException("Need one or more points with one time each");
+        }
+        for (int i = 1; i < times.length; i++) {
+            if (times[i] <= times[i - 1]) {
+                throw new IllegalArgumentException("Trajectory times must increase: " + times[i - 1] + ", " + times[i]);
+            }
+        }
+        this.times = times.clone();
+        this.points = new int[points.length][];
+        for (int i = 0; i < points.length; i++) {
+            this.points[i] = points[i].clone();
+        }
+    }
+
+    public long getEndMillis() {
+        return times[times.length - 1];
+    }
+
+    // Setpoint at the given time, interpolated; writes into out, which must fit one point
+    public void sample(long nowMillis, int[] out) {
+        int last = times.length - 1;
+        if (nowMillis <= times[0]) {
+            copy(points[0], out);
+            return;
+        }
+        if (nowMillis >= times[last]) {
+            copy(points[last], out);
+            return;
+        }
+        int next = firstAfter(nowMillis);
+        int prev = next - 1;
+        double f = (double) (nowMillis - times[prev]) / (times[next] - times[prev]);
+        for (int i = 0; i < points[prev].length; i++) {
+            out[i] = (int) Math.round(points[prev][i] + (points[next][i] - points[prev][i]) * f);
+        }
+    }
+
+    // Index of the first point strictly after the time, or times.length if none
+    public int firstAfter(long nowMillis) {
+        int lo = 0, hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= nowMillis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void copy(int[] from, int[] to) {
+        System.arraycopy(from, 0, to, 0, from.length);
+    }
+}
@@ -21,6 +21,10 @@ public class Imu {
         public double[] getAccel() { return accel.clone(); }
         public double[] getGyro() { return gyro.clone(); }
         public double getTemp() { return temp; }
+
+        // Allocation-free accessors for hot paths
+        public double getAccel(int axis) { return accel[axis]; }
+        public double getGyro(int axis) { return gyro[axis]; }
     }
 
     private volatile Data data;
@@ -0,0 +1,43 @@
+package com.picow.network;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with "equal jitter": the delay for attempt n is drawn
+ * uniformly from [d/2, d] where d = min(max, initial * 2^n), so reconnecting
+ * clients spread out instead of retrying in lockstep.
+ */
+public class Backoff {
+    private volatile long initialMillis;
+    private volatile long maxMillis;
+
+    public Backoff(long initialMillis, long maxMillis) {
+        setLimits(initialMillis, maxMillis);
+    }
+
+    public void setLimits(long initialMillis, long maxMillis) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new IllegalArgumentException("Invalid backoff limits " + initialMillis + "/" + maxMillis);
+        }
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getInitialMillis() {
+        return initialMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long delayMillis(int attempt) {
+        long max = maxMillis;
+        long d = initialMillis << Math.min(attempt, 30);
+        if (d <= 0 || d > max) {
+            d = max;
+        }
+        long half = d / 2;
+        return half + ThreadLocalRandom.current().nextLong(d - half + 1);
+    }
+}
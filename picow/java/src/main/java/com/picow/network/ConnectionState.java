@@ -0,0 +1,8 @@
+package com.picow.network;
+
+public enum ConnectionState {
+    DISCONNECTED, // never connected, or disconnected on request
+    CONNECTING,   // connect attempt in progress in the background
+    CONNECTED,
+    BACKOFF       // last attempt or connection failed; waiting before the next attempt
+}
@@ -0,0 +1,19 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fire-and-forget channel used for motor commands (UDP).
+ */
+public interface DatagramTransport {
+    void connect() throws IOException;
+    void disconnect() throws IOException;
+    boolean isConnected();
+    void send(String data) throws IOException;
+
+    // Sends length bytes of a caller-owned buffer; transports override this to avoid per-send allocation
+    default void send(byte[] data, int length) throws IOException {
+        send(new String(data, 0, length, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,98 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.picow.metrics.Counter;
+import com.picow.metrics.Metrics;
+import com.picow.time.Clock;
+
+/**
+ * Decorator that applies LinkFaults to the datagrams sent through another
+ * DatagramTransport. Lost datagrams and those sent during an outage vanish
+ * silently, as on a real link; delayed ones are copied and sent later from a
+ * scheduler of the clock, in send order unless the faults reorder. Without
+ * delay a datagram goes straight through, so a fault-free decorator keeps
+ * the allocation-free send path.
+ */
+public class FaultyDatagramTransport implements DatagramTransport {
+    private final DatagramTransport inner;
+    private final LinkFaults faults;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private long lastDeliveryNanos; // guarded by this
+
+    private final Counter dropped = Metrics.counter("faults.udp.dropped");
+    private final Counter droppedInOutage = Metrics.counter("faults.udp.droppedInOutage");
+    private final Counter delayed = Metrics.counter("faults.udp.delayed");
+    private final Counter sendErrors = Metrics.counter("faults.udp.sendErrors");
+
+    public FaultyDatagramTransport(DatagramTransport inner, LinkFaults faults, Clock clock) {
+        this.inner = inner;
+        this.faults = faults;
+        this.clock = clock;
+        this.scheduler = clock.newScheduler("faults-udp");
+    }
+
+    public LinkFaults getFaults() {
+        return faults;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        inner.connect();
+    }
+
+    @Override
+    public void disconnect() throws IOException {
+        scheduler.shutdownNow();
+        inner.disconnect();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return inner.isConnected();
+    }
+
+    @Override
+    public void send(String data) throws IOException {
+        byte[] bytes = data.getBytes();
+        send(bytes, bytes.length);
+    }
+
+    @Override
+    public synchronized void send(byte[] data, int length) throws IOException {
+        long now = clock.nanoTime();
+        if (faults.isDown(now)) {
+            droppedInOutage.increment();
+            return;
+        }
+        if (faults.drop()) {
+            dropped.increment();
+            return;
+        }
+        long deliverAt = now + faults.nextDelayNanos(length, now);
+        if (!faults.isReordering()) {
+            deliverAt = Math.max(deliverAt, lastDeliveryNanos);
+        }
+        lastDeliveryNanos = Math.max(lastDeliveryNanos, deliverAt);
+        if (deliverAt <= now) {
+            inner.send(data, length);
+            return;
+        }
+        delayed.increment();
+        byte[] copy = Arrays.copyOf(data, length);
+        scheduler.schedule(() -> deliver(copy), deliverAt - now, TimeUnit.NANOSECONDS);
+    }
+
+    private void deliver(byte[] data) {
+        try {
+            inner.send(data, data.length);
+        } catch (IOException e) {
+            sendErrors.increment();
+            System.err.println("Error sending delayed datagram: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.picow.metrics.Counter;
+import com.picow.metrics.Metrics;
+import com.picow.time.Clock;
+
+/**
+ * Decorator that applies LinkFaults to both directions of another
+ * StreamTransport, with stream semantics: nothing is lost or reordered, a
+ * "lost" line is retransmitted after retransmitMillis instead, and lines
+ * never overtake each other, so one slow line holds up the ones behind it.
+ * During an outage of the outbound faults the stream reports itself
+ * disconnected, sends fail and received lines are discarded, as if the
+ * connection had dropped; it comes back when the outage ends.
+ * Outbound lines and pushed inbound lines are delayed on a scheduler of the
+ * clock; polled inbound lines wait in a queue until read() finds them due.
+ */
+public class FaultyStreamTransport implements StreamTransport {
+    public static final double DEFAULT_RETRANSMIT_MILLIS = 200; // the minimum TCP retransmission timeout
+    private static final int MAX_RETRANSMITS = 15;              // as Linux tcp_retries2
+
+    private static final class Delivery {
+        final String line;
+        final long dueNanos;
+
+        Delivery(String line, long dueNanos) {
+            this.line = line;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    private final StreamTransport inner;
+    private final LinkFaults outbound;
+    private final LinkFaults inbound;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private volatile double retransmitMillis = DEFAULT_RETRANSMIT_MILLIS;
+
+    // Guarded by this
+    private long lastSendNanos;
+    private long lastReceiveNanos;
+    private final ArrayDeque<Delivery> received = new ArrayDeque<>(); // polled transports only
+
+    private final Counter retransmits = Metrics.counter("faults.tcp.retransmits");
+    private final Counter outageErrors = Metrics.counter("faults.tcp.outageErrors");
+    private final Counter discarded = Metrics.counter("faults.tcp.discarded");
+    private final Counter sendErrors = Metrics.counter("faults.tcp.sendErrors");
+
+    public FaultyStreamTransport(StreamTransport inner, LinkFaults outbound, LinkFaults inbound, Clock clock) {
+        this.inner = inner;
+        this.outbound = outbound;
+        this.inbound = inbound;
+        this.clock = clock;
+        this.scheduler = clock.newScheduler("faults-tcp");
+    }
+
+    public void setRetransmitMillis(double retransmitMillis) {
+        this.retransmitMillis = retransmitMillis;
+    }
+
+    public LinkFaults getOutbound() {
+        return outbound;
+    }
+
+    public LinkFaults getInbound() {
+        return inbound;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (outbound.isDown(clock.nanoTime())) {
+            outageErrors.increment();
+            throw new IOException("TCP link down");
+        }
+        inner.connect();
+    }
+
+    @Override
+    public void disconnect() throws IOException {
+        scheduler.shutdownNow();
+        inner.disconnect();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return inner.isConnected() && !outbound.isDown(clock.nanoTime());
+    }
+
+    @Override
+    public synchronized void send(String data) throws IOException, InterruptedException {
+        long now = clock.nanoTime();
+        if (outbound.isDown(now)) {
+            outageErrors.increment();
+            throw new IOException("TCP link down");
+        }
+        long deliverAt = Math.max(now + delayNanos(outbound, data.length(), now), lastSendNanos);
+        lastSendNanos = deliverAt;
+        if (deliverAt <= now) {
+            inner.send(data);
+            return;
+        }
+        scheduler.schedule(() -> deliver(data), deliverAt - now, TimeUnit.NANOSECONDS);
+    }
+
+    private void deliver(String data) {
+        try {
+            inner.send(data);
+        } catch (IOException e) {
+            sendErrors.increment();
+            System.err.println("Error sending delayed line: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized String read() throws IOException, InterruptedException {
+        String line = inner.read();
+        if (line != null) {
+            long now = clock.nanoTime();
+            if (outbound.isDown(now)) {
+                discarded.increment();
+            } else {
+                received.add(new Delivery(line, receiveAt(line, now)));
+            }
+        }
+        Delivery head = received.peek();
+        if (head != null && head.dueNanos <= clock.nanoTime()) {
+            received.poll();
+            return head.line;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean supportsPush() {
+        return inner.supportsPush();
+    }
+
+    @Override
+    public void setLineHandler(Consumer<String> handler) {
+        inner.setLineHandler(line -> {
+            long now = clock.nanoTime();
+            long deliverAt;
+            synchronized (this) {
+                if (outbound.isDown(now)) {
+                    discarded.increment();
+                    return;
+                }
+                deliverAt = receiveAt(line, now);
+            }
+            if (deliverAt <= now) {
+                handler.accept(line);
+            } else {
+                scheduler.schedule(() -> handler.accept(line), deliverAt - now, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private long receiveAt(String line, long now) {
+        long deliverAt = Math.max(now + delayNanos(inbound, line.length(), now), lastReceiveNanos);
+        lastReceiveNanos = deliverAt;
+        return deliverAt;
+    }
+
+    private long delayNanos(LinkFaults faults, int bytes, long now) {
+        long delay = faults.nextDelayNanos(bytes, now);
+        // Every lost copy costs a retransmission timeout
+        for (int i = 0; i < MAX_RETRANSMITS && faults.drop(); i++) {
+            retransmits.increment();
+            delay += (long) (retransmitMillis * 1_000_000);
+        }
+        return delay;
+    }
+}
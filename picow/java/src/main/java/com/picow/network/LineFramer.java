@@ -0,0 +1,59 @@
+package com.picow.network;
+
+/**
+ * Splits a character stream into newline-terminated messages. Consumed lines are
+ * skipped by offset and the buffer is compacted only once they dominate it, and
+ * the scan resumes where it left off, so each character is examined once.
+ */
+public class LineFramer {
+    private final StringBuilder buffer = new StringBuilder();
+    private int start;    // first unconsumed character
+    private int scanFrom; // no newline in [start, scanFrom)
+
+    public void append(char[] chars, int offset, int length) {
+        buffer.append(chars, offset, length);
+    }
+
+    public void append(CharSequence chars) {
+        buffer.append(chars);
+    }
+
+    // Returns the next complete line without its terminator, or null if none is buffered
+    public String nextLine() {
+        int length = buffer.length();
+        for (int i = scanFrom; i < length; i++) {
+            if (buffer.charAt(i) == '\n') {
+                int end = i > start && buffer.charAt(i - 1) == '\r' ? i - 1 : i;
+                String line = buffer.substring(start, end);
+                start = i + 1;
+                scanFrom = start;
+                compact();
+                return line;
+            }
+        }
+        scanFrom = length;
+        return null;
+    }
+
+    public boolean hasBufferedData() {
+        return buffer.length() > start;
+    }
+
+    public void clear() {
+        buffer.setLength(0);
+        start = 0;
+        scanFrom = 0;
+    }
+
+    private void compact() {
+        if (start == buffer.length()) {
+            buffer.setLength(0);
+            scanFrom -= start;
+            start = 0;
+        } else if (start > 4096 && start > buffer.length() / 2) {
+            buffer.delete(0, start);
+            scanFrom -= start;
+            start = 0;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.picow.network;
+
+import java.util.Random;
+
+/**
+ * Faults of one direction of a link, applied by FaultyStreamTransport and
+ * FaultyDatagramTransport: base delay with uniform jitter and a long tail,
+ * independent and burst loss (Gilbert-Elliott: a good and a bad state, lossy
+ * while bad), reordering, a bandwidth cap and scheduled link outages.
+ * Draws come from one seeded Random and outages are drawn from the times
+ * passed in, so on a VirtualClock a run repeats exactly for a given seed.
+ */
+public class LinkFaults {
+    private double delayMillis;
+    private double jitterMillis;
+    private double tailRate;
+    private double tailMeanMillis;
+    private double lossRate;
+    private double burstEnterRate;
+    private double burstExitRate;
+    private double burstLossRate;
+    private double reorderRate;
+    private double reorderExtraMillis;
+    private long bytesPerSecond;
+    private double meanUpMillis;
+    private double meanDownMillis;
+    private final Random random;
+
+    // Guarded by this
+    private boolean inBurst;
+    private long busyUntilNanos;   // the cap's queue drains at this time
+    private boolean outageDrawn;
+    private long nextOutageNanos;
+    private long outageEndNanos;
+    private long outages;
+
+    public LinkFaults() {
+        this(0);
+    }
+
+    public LinkFaults(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static LinkFaults none() {
+        return new LinkFaults();
+    }
+
+    public LinkFaults delay(double millis) { this.delayMillis = millis; return this; }
+    public LinkFaults jitter(double millis) { this.jitterMillis = millis; return this; }
+    public LinkFaults loss(double rate) { this.lossRate = rate; return this; }
+
+    // A share of messages is delayed further by an exponential extra, as WiFi retries do
+    public LinkFaults tail(double rate, double meanMillis) {
+        this.tailRate = rate;
+        this.tailMeanMillis = meanMillis;
+        return this;
+    }
+
+    // Bursts start with enterRate per message, last meanLength messages on average and lose lossRate of them
+    public LinkFaults burstLoss(double enterRate, double meanLength, double lossRate) {
+        this.burstEnterRate = enterRate;
+        this.burstExitRate = meanLength > 0 ? 1 / meanLength : 1;
+        this.burstLossRate = lossRate;
+        return this;
+    }
+
+    // A reordered message is held back by an extra delay so later ones overtake it
+    public LinkFaults reorder(double rate, double extraMillis) {
+        this.reorderRate = rate;
+        this.reorderExtraMillis = extraMillis;
+        return this;
+    }
+
+    // Messages queue behind each other at this rate; 0 for no cap
+    public LinkFaults bandwidth(long bytesPerSecond) { this.bytesPerSecond = bytesPerSecond; return this; }
+
+    // The link goes down for exponentially distributed outages with exponential gaps between them
+    public LinkFaults outages(double meanUpMillis, double meanDownMillis) {
+        this.meanUpMillis = meanUpMillis;
+        this.meanDownMillis = meanDownMillis;
+        return this;
+    }
+
+    public boolean isReordering() {
+        return reorderRate > 0;
+    }
+
+    // Loss of the next message, advancing the burst state
+    public synchronized boolean drop() {
+        if (burstEnterRate > 0) {
+            inBurst = inBurst ? random.nextDouble() >= burstExitRate : random.nextDouble() < burstEnterRate;
+            if (inBurst && random.nextDouble() < burstLossRate) {
+                return true;
+            }
+        }
+        return lossRate > 0 && random.nextDouble() < lossRate;
+    }
+
+    public synchronized boolean isInBurst() {
+        return inBurst;
+    }
+
+    // Delay of a message of the given size sent at nowNanos, including its wait behind the bandwidth cap
+    public synchronized long nextDelayNanos(int bytes, long nowNanos) {
+        double millis = delayMillis;
+        if (jitterMillis > 0) {
+            millis += random.nextDouble() * jitterMillis;
+        }
+        if (tailRate > 0 && random.nextDouble() < tailRate) {
+            millis += -Math.log(1 - random.nextDouble()) * tailMeanMillis;
+        }
+        if (reorderRate > 0 && random.nextDouble() < reorderRate) {
+            millis += reorderExtraMillis;
+        }
+        long delay = (long) (millis * 1_000_000);
+        if (bytesPerSecond > 0) {
+            long start = Math.max(nowNanos, busyUntilNanos);
+            busyUntilNanos = start + bytes * 1_000_000_000L / bytesPerSecond;
+            delay += busyUntilNanos - nowNanos;
+        }
+        return delay;
+    }
+
+    public synchronized boolean isDown(long nowNanos) {
+        if (meanUpMillis <= 0 || meanDownMillis <= 0) {
+            return false;
+        }
+        if (!outageDrawn) {
+            outageDrawn = true;
+            nextOutageNanos = nowNanos + exponentialNanos(meanUpMillis);
+            outageEndNanos = nextOutageNanos + exponentialNanos(meanDownMillis);
+        }
+        while (nowNanos >= outageEndNanos) {
+            outages++;
+            nextOutageNanos = outageEndNanos + exponentialNanos(meanUpMillis);
+            outageEndNanos = nextOutageNanos + exponentialNanos(meanDownMillis);
+        }
+        return nowNanos >= nextOutageNanos;
+    }
+
+    // Outages finished by the last isDown() call
+    public synchronized long getOutages() {
+        return outages;
+    }
+
+    private long exponentialNanos(double meanMillis) {
+        return (long) (-Math.log(1 - random.nextDouble()) * meanMillis * 1_000_000);
+    }
+
+    @Override
+    public String toString() {
+        return "delay=" + delayMillis + "ms jitter=" + jitterMillis + "ms tail=" + tailRate + "/" + tailMeanMillis
+            + "ms loss=" + lossRate + " burst=" + burstEnterRate + "/" + burstExitRate + "/" + burstLossRate
+            + " reorder=" + reorderRate + "/" + reorderExtraMillis + "ms bandwidth=" + bytesPerSecond
+            + "B/s outages=" + meanUpMillis + "/" + meanDownMillis + "ms";
+    }
+}
@@ -0,0 +1,158 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single selector thread shared by any number of non-blocking transports.
+ * Channel registration and interest changes are submitted with execute() and
+ * run on the loop thread, so handlers never need their own locking against it.
+ */
+public class NioEventLoop {
+    public interface Handler {
+        // Called on the loop thread with the ready operations of the key
+        void onReady(SelectionKey key) throws IOException;
+
+        // Called on the loop thread when onReady throws
+        void onError(IOException e);
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(); // loop thread only
+    private long timerSequence;
+
+    private static final class Timer implements Comparable<Timer> {
+        final long deadlineNanos;
+        final long sequence;
+        final Runnable task;
+
+        Timer(long deadlineNanos, long sequence, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int c = Long.compare(deadlineNanos - other.deadlineNanos, 0);
+            return c != 0 ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        if (running.getAndSet(true)) return;
+        thread.start();
+    }
+
+    public void stop() {
+        if (!running.getAndSet(false)) return;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    public void execute(Runnable task) {
+        if (inLoop()) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    // Runs the task on the loop thread after the delay; tasks check their own state when they fire
+    public void schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() + delayMillis * 1_000_000L;
+        execute(() -> timers.add(new Timer(deadline, timerSequence++, task)));
+    }
+
+    // Only call from the loop thread, e.g. inside execute()
+    public SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+        return channel.register(selector, ops, handler);
+    }
+
+    private void runDueTimers() {
+        long now = System.nanoTime();
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.deadlineNanos - now <= 0) {
+            timers.poll();
+            try {
+                timer.task.run();
+            } catch (Exception e) {
+                System.err.println("Error in I/O timer: " + e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        while (running.get()) {
+            try {
+                Timer next = timers.peek();
+                if (next == null) {
+                    selector.select();
+                } else {
+                    long waitMillis = (next.deadlineNanos - System.nanoTime() + 999_999) / 1_000_000;
+                    if (waitMillis > 0) {
+                        selector.select(waitMillis);
+                    } else {
+                        selector.selectNow();
+                    }
+                }
+                runDueTimers();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        System.err.println("Error in I/O task: " + e.getMessage());
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Handler handler = (Handler) key.attachment();
+                    if (!key.isValid()) continue;
+                    try {
+                        handler.onReady(key);
+                    } catch (IOException e) {
+                        handler.onError(e);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Selector error: " + e.getMessage());
+            } catch (Exception e) {
+                // A misbehaving handler must not stop I/O for every other robot
+                System.err.println("Error in I/O loop: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import com.picow.metrics.Counter;
+import com.picow.metrics.Metrics;
+
+/**
+ * Non-blocking TCP line transport driven by a shared NioEventLoop. Connecting,
+ * writing and reading all happen on the loop thread; send() only queues bytes,
+ * so callers never block on the network. Received lines are pushed to the line
+ * handler or, without one, queued for read().
+ */
+public class NioTcpTransport implements StreamTransport, NioEventLoop.Handler {
+    private static final int MAX_QUEUED_LINES = 1024;
+
+    private final String host;
+    private final int port;
+    private final NioEventLoop loop;
+
+    private SocketChannel channel;  // loop thread only
+    private SelectionKey key;       // loop thread only
+    private volatile ConnectionState state = ConnectionState.DISCONNECTED;
+    private final Backoff backoff = new Backoff(TcpTransport.DEFAULT_INITIAL_BACKOFF_MILLIS,
+        TcpTransport.DEFAULT_MAX_BACKOFF_MILLIS);
+    private int attempt;            // loop thread only
+    private boolean everConnected;  // loop thread only
+
+    private final ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(4096);
+    private final CharBuffer charBuffer = CharBuffer.allocate(4096);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private final LineFramer framer = new LineFramer();
+    private final ConcurrentLinkedQueue<String> inbox = new ConcurrentLinkedQueue<>();
+    private volatile Consumer<String> lineHandler;
+
+    private final Counter connects;
+    private final Counter reconnects;
+    private final Counter errors;
+    private final Counter messagesRead;
+
+    public NioTcpTransport(NioEventLoop loop, String host, int port, String metricPrefix) {
+        this.loop = loop;
+        this.host = host;
+        this.port = port;
+        this.connects = Metrics.counter(metricPrefix + ".connects");
+        this.reconnects = Metrics.counter(metricPrefix + ".reconnects");
+        this.errors = Metrics.counter(metricPrefix + ".errors");
+        this.messagesRead = Metrics.counter(metricPrefix + ".messagesRead");
+    }
+
+    // Starts a background connect and returns immediately
+    public void connect() {
+        loop.execute(() -> {
+            if (state != ConnectionState.DISCONNECTED) return;
+            state = ConnectionState.CONNECTING;
+            attempt = 0;
+            openChannel();
+        });
+    }
+
+    public void disconnect() {
+        loop.execute(() -> {
+            state = ConnectionState.DISCONNECTED;
+            closeChannel();
+        });
+    }
+
+    public boolean isConnected() {
+        return state == ConnectionState.CONNECTED;
+    }
+
+    public ConnectionState getState() {
+        return state;
+    }
+
+    public void setBackoffMillis(long initialMillis, long maxMillis) {
+        backoff.setLimits(initialMillis, maxMillis);
+    }
+
+    public long getInitialBackoffMillis() {
+        return backoff.getInitialMillis();
+    }
+
+    public long getMaxBackoffMillis() {
+        return backoff.getMaxMillis();
+    }
+
+    // Fails fast while down; reconnecting is left to the backoff timer
+    public void send(String data) throws IOException {
+        checkConnected();
+        writeQueue.add(ByteBuffer.wrap((data + "\n").getBytes(StandardCharsets.UTF_8)));
+        loop.execute(this::flush);
+    }
+
+    @Override
+    public void send(byte[] data, int length) throws IOException {
+        checkConnected();
+        ByteBuffer line = ByteBuffer.allocate(length + 1);
+        line.put(data, 0, length).put((byte) '\n').flip();
+        writeQueue.add(line);
+        loop.execute(this::flush);
+    }
+
+    // A lost connection is already being retried; one closed by disconnect() stays closed until connect()
+    private void checkConnected() throws IOException {
+        if (state != ConnectionState.CONNECTED) {
+            throw new IOException(state == ConnectionState.DISCONNECTED ? "TCP disconnected" : "TCP Not connected");
+        }
+    }
+
+    public String read() throws IOException {
+        return inbox.poll();
+    }
+
+    @Override
+    public boolean supportsPush() {
+        return true;
+    }
+
+    @Override
+    public void setLineHandler(Consumer<String> handler) {
+        this.lineHandler = handler;
+    }
+
+    private void openChannel() {
+        if (channel != null) return;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            boolean done = channel.connect(new InetSocketAddress(host, port));
+            key = loop.register(channel, done ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+            if (done) {
+                onConnected();
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private void onConnected() {
+        framer.clear();
+        decoder.reset();
+        readBuffer.clear();
+        connects.increment();
+        if (everConnected) {
+            reconnects.increment();
+        }
+        everConnected = true;
+        attempt = 0;
+        state = ConnectionState.CONNECTED;
+        key.interestOps(SelectionKey.OP_READ);
+        flush();
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already broken
+        }
+        channel = null;
+        key = null;
+        writeQueue.clear();
+    }
+
+    @Override
+    public void onReady(SelectionKey readyKey) throws IOException {
+        if (readyKey.isConnectable() && channel.finishConnect()) {
+            onConnected();
+        }
+        if (readyKey.isValid() && readyKey.isReadable()) {
+            readLines();
+        }
+        if (readyKey.isValid() && readyKey.isWritable()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onError(IOException e) {
+        errors.increment();
+        System.err.println("TCP " + host + ":" + port + " error: " + e.getMessage());
+        closeChannel();
+        if (state == ConnectionState.DISCONNECTED) return;
+        state = ConnectionState.BACKOFF;
+        loop.schedule(() -> {
+            if (state != ConnectionState.BACKOFF) return;
+            state = ConnectionState.CONNECTING;
+            openChannel();
+        }, backoff.delayMillis(attempt++));
+    }
+
+    // Loop thread: write as much as the socket takes, then wait for OP_WRITE
+    private void flush() {
+        if (state != ConnectionState.CONNECTED || key == null) return;
+        try {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeQueue.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private void readLines() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n == -1) {
+            throw new IOException("Connection closed by server");
+        }
+        readBuffer.flip();
+        decoder.decode(readBuffer, charBuffer, false);
+        readBuffer.compact();
+        charBuffer.flip();
+        framer.append(charBuffer);
+        charBuffer.clear();
+
+        Consumer<String> handler = lineHandler;
+        String line;
+        while ((line = framer.nextLine()) != null) {
+            messagesRead.increment();
+            if (handler != null) {
+                try {
+                    handler.accept(line);
+                } catch (Exception e) {
+                    System.err.println("Error handling TCP line: " + e.getMessage());
+                }
+            } else if (inbox.size() < MAX_QUEUED_LINES) {
+                inbox.add(line);
+            }
+        }
+    }
+}
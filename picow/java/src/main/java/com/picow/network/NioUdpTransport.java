@@ -0,0 +1,86 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.picow.metrics.Counter;
+import com.picow.metrics.Metrics;
+
+/**
+ * Non-blocking UDP transport for fleets. Motor datagrams are only ever sent, so
+ * the channel needs no selector registration or thread of its own; a send that
+ * would block is dropped and counted rather than waited for.
+ */
+public class NioUdpTransport implements DatagramTransport {
+    private final String host;
+    private final int port;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(UdpTransport.MAX_UDP_PACKET_SIZE);
+    private volatile DatagramChannel channel;
+
+    private final Counter packetsSent;
+    private final Counter sendFailures;
+
+    public NioUdpTransport(String host, int port, String metricPrefix) {
+        this.host = host;
+        this.port = port;
+        this.packetsSent = Metrics.counter(metricPrefix + ".packetsSent");
+        this.sendFailures = Metrics.counter(metricPrefix + ".sendFailures");
+    }
+
+    public synchronized void connect() throws IOException {
+        if (isConnected()) return;
+        DatagramChannel ch = DatagramChannel.open();
+        ch.configureBlocking(false);
+        ch.connect(new InetSocketAddress(host, port));
+        channel = ch;
+    }
+
+    public synchronized void disconnect() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public boolean isConnected() {
+        DatagramChannel ch = channel;
+        return ch != null && ch.isOpen();
+    }
+
+    public synchronized void send(String data) throws IOException {
+        if (data == null) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        send(bytes, bytes.length);
+    }
+
+    @Override
+    public synchronized void send(byte[] data, int length) throws IOException {
+        if (!isConnected()) {
+            connect();
+        }
+        if (length > UdpTransport.MAX_UDP_PACKET_SIZE) {
+            sendFailures.increment();
+            throw new IOException("Data too large for UDP packet. Max size: " + UdpTransport.MAX_UDP_PACKET_SIZE +
+                                " bytes, got: " + length + " bytes");
+        }
+        sendBuffer.clear();
+        sendBuffer.put(data, 0, length);
+        sendBuffer.flip();
+        try {
+            if (channel.write(sendBuffer) == 0) {
+                sendFailures.increment();
+                return;
+            }
+            packetsSent.increment();
+        } catch (IOException e) {
+            // e.g. PortUnreachableException from an earlier ICMP error on the connected channel
+            sendFailures.increment();
+            throw e;
+        }
+    }
+}
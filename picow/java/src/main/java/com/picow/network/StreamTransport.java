@@ -0,0 +1,34 @@
+package com.picow.network;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reliable, line-oriented channel used for sensor pulls and telemetry (TCP).
+ * Lines are either polled with read() or, for transports that support it,
+ * pushed to a handler as they arrive.
+ */
+public interface StreamTransport {
+    void connect() throws IOException;
+    void disconnect() throws IOException;
+    boolean isConnected();
+    void send(String data) throws IOException, InterruptedException;
+
+    // A line already encoded as UTF-8, without its line break; data may be reused once this returns
+    default void send(byte[] data, int length) throws IOException, InterruptedException {
+        send(new String(data, 0, length, StandardCharsets.UTF_8));
+    }
+
+    // Next complete line, or null if none is available yet
+    String read() throws IOException, InterruptedException;
+
+    default boolean supportsPush() {
+        return false;
+    }
+
+    // Called on the transport's I/O thread for every received line
+    default void setLineHandler(Consumer<String> handler) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not push lines");
+    }
+}
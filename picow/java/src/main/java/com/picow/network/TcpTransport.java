@@ -3,115 +3,394 @@ package com.picow.network;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+
+/**
+ * Blocking-socket TCP line transport with a background connection manager.
+ * Connecting and reconnecting happen on a private connector thread with
+ * exponential backoff and jitter; send() and read() never wait for a connection.
+ * While down, sends are queued up to a small bound (oldest dropped first) and
+ * flushed once the connection is back.
+ */
+public class TcpTransport implements StreamTransport {
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    public static final int DEFAULT_INITIAL_BACKOFF_MILLIS = 200;
+    public static final int DEFAULT_MAX_BACKOFF_MILLIS = 5000;
+    public static final int DEFAULT_MAX_QUEUED_SENDS = 4;
 
-public class TcpTransport {
     private final String host;
     private final int port;
-    private final int maxRetries = 5;
-    private final int retryDelayMillis = 200;
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
-    private final AtomicBoolean running = new AtomicBoolean(false);
-    private final StringBuilder receiveBuffer = new StringBuilder();
+    private final Backoff backoff = new Backoff(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int maxQueuedSends = DEFAULT_MAX_QUEUED_SENDS;
+
+    // Connection state, guarded by stateLock; link is also read without the lock
+    private final Object stateLock = new Object();
+    private volatile ConnectionState state = ConnectionState.DISCONNECTED;
+    private volatile Link link;
+    private ScheduledExecutorService connector;
+    private ScheduledFuture<?> retryTask;
+    private int attempt;
+    private boolean everConnected;
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+
+    private final Object writeLock = new Object();
+    private byte[] lineBuffer = new byte[256]; // guarded by writeLock
+    // Reading thread only; the framer is not thread-safe, so a new link is noticed and cleared there
+    private final LineFramer receiveBuffer = new LineFramer();
+    private Link framedLink;
+    private final char[] readBuffer = new char[1024];
+
+    private final LatencyHistogram sendLatency;
+    private final LatencyHistogram readLatency;
+    private final Counter reconnects;
+    private final Counter connectFailures;
+    private final Counter messagesRead;
+    private final Counter sendsQueued;
+    private final Counter sendsDropped;
+
+    private static final class Link {
+        final Socket socket;
+        final OutputStream out;
+        final BufferedReader in;
+
+        Link(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already broken
+            }
+        }
+    }
 
     public TcpTransport(String host, int port) {
+        this(host, port, "tcp");
+    }
+
+    // Metrics go under metricPrefix, e.g. a fleet robot's "fleet.<name>.tcp"
+    public TcpTransport(String host, int port, String metricPrefix) {
         this.host = host;
         this.port = port;
+        this.sendLatency = Metrics.histogram(metricPrefix + ".send.nanos");
+        this.readLatency = Metrics.histogram(metricPrefix + ".read.nanos");
+        this.reconnects = Metrics.counter(metricPrefix + ".reconnects");
+        this.connectFailures = Metrics.counter(metricPrefix + ".connectFailures");
+        this.messagesRead = Metrics.counter(metricPrefix + ".messagesRead");
+        this.sendsQueued = Metrics.counter(metricPrefix + ".sendsQueued");
+        this.sendsDropped = Metrics.counter(metricPrefix + ".sendsDropped");
     }
 
-    public void connect() throws IOException {
-        if (isConnected()) {
-            return;
+    // Starts connecting in the background and returns immediately
+    public void connect() {
+        synchronized (stateLock) {
+            if (state != ConnectionState.DISCONNECTED) {
+                return;
+            }
+            if (connector == null) {
+                connector = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "tcp-connect-" + host + ":" + port);
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            state = ConnectionState.CONNECTING;
+            attempt = 0;
+            connector.execute(this::attemptConnect);
+        }
+    }
+
+    public void disconnect() {
+        Link old;
+        synchronized (stateLock) {
+            state = ConnectionState.DISCONNECTED;
+            if (retryTask != null) {
+                retryTask.cancel(false);
+                retryTask = null;
+            }
+            if (connector != null) {
+                connector.shutdownNow();
+                connector = null;
+            }
+            pending.clear();
+            old = link;
+            link = null;
+        }
+        if (old != null) {
+            old.close();
         }
+    }
+
+    public boolean isConnected() {
+        return state == ConnectionState.CONNECTED;
+    }
 
-        socket = new Socket(host, port);
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        running.set(true);
+    public ConnectionState getState() {
+        return state;
     }
 
-    public void disconnect() throws IOException {
-        running.set(false);
-        if (socket != null) {
-            socket.close();
-            socket = null;
+    // Waits up to the timeout for a connection; false if still down
+    public boolean awaitConnected(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        synchronized (stateLock) {
+            while (state != ConnectionState.CONNECTED) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                stateLock.wait(remainingMillis);
+            }
+            return true;
         }
     }
 
-    public void reconnect() throws IOException {
-        disconnect();
-        connect();
+    public void setBackoffMillis(long initialMillis, long maxMillis) {
+        backoff.setLimits(initialMillis, maxMillis);
     }
 
-    public boolean isConnected() {
-        return socket != null && socket.isConnected() && !socket.isClosed();
+    public long getInitialBackoffMillis() {
+        return backoff.getInitialMillis();
+    }
+
+    public long getMaxBackoffMillis() {
+        return backoff.getMaxMillis();
+    }
+
+    public void setConnectTimeoutMillis(int millis) {
+        this.connectTimeoutMillis = millis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setMaxQueuedSends(int max) {
+        this.maxQueuedSends = max;
+    }
+
+    public int getMaxQueuedSends() {
+        return maxQueuedSends;
+    }
+
+    // Connector thread
+    private void attemptConnect() {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+            Link connected = new Link(socket);
+            synchronized (stateLock) {
+                if (state != ConnectionState.CONNECTING) {
+                    connected.close(); // disconnected meanwhile
+                    return;
+                }
+                link = connected;
+                state = ConnectionState.CONNECTED;
+                attempt = 0;
+                stateLock.notifyAll();
+                if (everConnected) {
+                    reconnects.increment();
+                }
+                everConnected = true;
+            }
+            flushPending(connected);
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing to release
+            }
+            connectFailures.increment();
+            synchronized (stateLock) {
+                if (state == ConnectionState.CONNECTING) {
+                    scheduleRetry();
+                }
+            }
+        }
     }
 
-    public synchronized void send(String data) throws IOException, InterruptedException  {
-        boolean connected = false;
-        for (int attempt = 0; attempt < maxRetries; ++attempt){
-            if (isConnected()) {
-                connected = true;
-                break;
+    // Caller holds stateLock
+    private void scheduleRetry() {
+        state = ConnectionState.BACKOFF;
+        long delay = backoff.delayMillis(attempt++);
+        retryTask = connector.schedule(() -> {
+            synchronized (stateLock) {
+                if (state != ConnectionState.BACKOFF) return;
+                state = ConnectionState.CONNECTING;
+            }
+            attemptConnect();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void connectionLost(Link failed, IOException e) {
+        synchronized (stateLock) {
+            if (link != failed) {
+                return; // already handled
+            }
+            link = null;
+            failed.close();
+            System.err.println("TCP connection to " + host + ":" + port + " lost: " + e.getMessage());
+            if (state == ConnectionState.CONNECTED) {
+                attempt = 0;
+                scheduleRetry();
+            }
+        }
+    }
+
+    private void flushPending(Link target) {
+        while (true) {
+            String data;
+            synchronized (stateLock) {
+                data = pending.poll();
+            }
+            if (data == null || !write(target, data)) {
+                return;
             }
+        }
+    }
 
-            if (attempt < maxRetries){
-                reconnect();
-                Thread.sleep(attempt * retryDelayMillis);
+    private boolean write(Link target, String data) {
+        try {
+            synchronized (writeLock) {
+                target.out.write((data + "\n").getBytes(StandardCharsets.UTF_8));
             }
+            return true;
+        } catch (IOException e) {
+            connectionLost(target, e);
+            return false;
         }
+    }
 
-        if (!connected) {
-            throw new IOException("TCP Not connected");
+    // Copied into one reused buffer with its line break, so nothing is allocated while connected
+    private boolean write(Link target, byte[] data, int length) {
+        try {
+            synchronized (writeLock) {
+                if (lineBuffer.length <= length) {
+                    lineBuffer = new byte[Math.max(length + 1, lineBuffer.length * 2)];
+                }
+                System.arraycopy(data, 0, lineBuffer, 0, length);
+                lineBuffer[length] = '\n';
+                target.out.write(lineBuffer, 0, length + 1);
+            }
+            return true;
+        } catch (IOException e) {
+            connectionLost(target, e);
+            return false;
         }
-        
-        out.println(data);
     }
 
-    public String read() throws IOException, InterruptedException {
-        boolean connected = false;
-        for (int attempt = 0; attempt < maxRetries; ++attempt){
-            if (isConnected()) {
-                connected = true;
-                break;
+    @Override
+    public void send(byte[] data, int length) throws IOException {
+        Link current = link;
+        if (current == null) {
+            // Queued while down, as a String like any other send
+            send(new String(data, 0, length, StandardCharsets.UTF_8));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (!write(current, data, length)) {
+                throw new IOException("TCP connection lost");
             }
+        } finally {
+            sendLatency.recordSince(start);
+        }
+    }
 
-            if (attempt < maxRetries){
-                reconnect();
-                Thread.sleep(attempt * retryDelayMillis);
+    public void send(String data) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Link current = link;
+            if (current != null) {
+                if (!write(current, data)) {
+                    throw new IOException("TCP connection lost");
+                }
+                return;
+            }
+            // Down: keep the most recent sends for when the link returns
+            synchronized (stateLock) {
+                if (maxQueuedSends <= 0) {
+                    sendsDropped.increment();
+                } else {
+                    if (pending.size() >= maxQueuedSends) {
+                        pending.poll();
+                        sendsDropped.increment();
+                    }
+                    pending.add(data);
+                    sendsQueued.increment();
+                }
             }
+            connect();
+        } finally {
+            sendLatency.recordSince(start);
         }
+    }
 
-        if (!connected) {
-            throw new IOException("TCP Not connected");
+    public String read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            String message = readLine();
+            if (message != null) {
+                messagesRead.increment();
+            }
+            return message;
+        } finally {
+            readLatency.recordSince(start);
         }
+    }
 
-        // Check if there's data available without blocking
-        if (in == null || !in.ready()) {
+    private String readLine() throws IOException {
+        Link current = link;
+        if (current == null) {
             return null;
         }
-
-        // Read available data
-        char[] buffer = new char[1024];
-        int bytesRead = in.read(buffer, 0, buffer.length);
-        if (bytesRead == -1) {
-            throw new IOException("Connection closed by server");
+        if (current != framedLink) {
+            // Partial lines of the old connection are garbage on the new one
+            receiveBuffer.clear();
+            framedLink = current;
         }
 
-        // Add to buffer and check for complete messages
-        receiveBuffer.append(buffer, 0, bytesRead);
-        int newlineIndex = receiveBuffer.indexOf("\n");
-        if (newlineIndex == -1) {
-            return null; // No complete message yet
+        // Deliver messages already buffered by an earlier read first
+        String message = receiveBuffer.nextLine();
+        if (message != null) {
+            return message;
         }
 
-        // Extract and remove the complete message
-        String message = receiveBuffer.substring(0, newlineIndex);
-        receiveBuffer.delete(0, newlineIndex + 1);
-        return message;
+        try {
+            // Check if there's data available without blocking
+            if (!current.in.ready()) {
+                return null;
+            }
+
+            // Read available data
+            int bytesRead = current.in.read(readBuffer, 0, readBuffer.length);
+            if (bytesRead == -1) {
+                throw new IOException("Connection closed by server");
+            }
+
+            // Add to buffer and check for complete messages
+            receiveBuffer.append(readBuffer, 0, bytesRead);
+            return receiveBuffer.nextLine(); // null if no complete message yet
+        } catch (IOException e) {
+            connectionLost(current, e);
+            throw e;
+        }
     }
-} 
\ No newline at end of file
+}
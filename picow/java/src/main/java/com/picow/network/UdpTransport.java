@@ -5,19 +5,32 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 
-public class UdpTransport {
+import com.picow.metrics.Counter;
+import com.picow.metrics.Metrics;
+
+public class UdpTransport implements DatagramTransport {
     private final String host;
     private final int port;
     private DatagramSocket socket;
     private InetAddress address;
+    private DatagramPacket packet; // reused by send(byte[], int)
     private final int maxRetries = 5;
+    private final Counter packetsSent;
+    private final Counter sendFailures;
     
     // UDP packet size limits
     public static int MAX_UDP_PACKET_SIZE = 1020; // Safe UDP packet size (1024 - 4 bytes for header)
 
     public UdpTransport(String host, int port) {
+        this(host, port, "udp");
+    }
+
+    // Metrics go under metricPrefix, e.g. a fleet robot's "fleet.<name>.udp"
+    public UdpTransport(String host, int port, String metricPrefix) {
         this.host = host;
         this.port = port;
+        this.packetsSent = Metrics.counter(metricPrefix + ".packetsSent");
+        this.sendFailures = Metrics.counter(metricPrefix + ".sendFailures");
     }
 
     public void connect() throws IOException {
@@ -62,6 +75,7 @@ public class UdpTransport {
         }
 
         if (!connected) {
+            sendFailures.increment();
             throw new IOException("UDP Not connected");
         }
 
@@ -75,6 +89,37 @@ public class UdpTransport {
         }
 
         DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, address, port);
-        socket.send(sendPacket);
+        try {
+            socket.send(sendPacket);
+            packetsSent.increment();
+        } catch (IOException e) {
+            sendFailures.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void send(byte[] data, int length) throws IOException {
+        if (!isConnected()) {
+            connect();
+        }
+        if (length > MAX_UDP_PACKET_SIZE) {
+            sendFailures.increment();
+            throw new IOException("Data too large for UDP packet. Max size: " + MAX_UDP_PACKET_SIZE +
+                                " bytes, got: " + length + " bytes");
+        }
+        if (packet == null) {
+            packet = new DatagramPacket(data, length, address, port);
+        } else {
+            packet.setData(data, 0, length);
+            packet.setAddress(address);
+        }
+        try {
+            socket.send(packet);
+            packetsSent.increment();
+        } catch (IOException e) {
+            sendFailures.increment();
+            throw e;
+        }
     }
 } 
\ No newline at end of file
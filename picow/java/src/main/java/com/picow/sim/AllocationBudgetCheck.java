@@ -0,0 +1,187 @@
+package com.picow.sim;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.controller.HeadingHoldController;
+import com.picow.metrics.Allocations;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.MotorCommandBus;
+import com.picow.model.Odometry;
+import com.picow.model.RobotFactory;
+import com.picow.model.RobotModel;
+import com.picow.model.commands.CommandJsonEncoder;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.commands.MotorFrameEncoder;
+import com.picow.model.commands.MotorFrameHistory;
+import com.picow.model.commands.SensorPullCommand;
+
+/**
+ * Allocation budget regression check. Calls the hot paths directly on this
+ * thread, then runs a robot with the heading-hold controller against a local
+ * PicoSimulator and reads the per-iteration *.alloc.bytes histograms of each
+ * loop. Fails with exit code 1 if the mean bytes per iteration of any path is
+ * over its budget below. Data logging is off, as budgets cover the loops
+ * themselves, and the live state export is on; lower a budget whenever a path
+ * gets leaner.
+ *
+ * Usage: AllocationBudgetCheck [seconds]
+ */
+public class AllocationBudgetCheck {
+    private static final int DIRECT_ITERATIONS = 200_000;
+
+    private static final class Budget {
+        final String path;
+        final long bytes;
+
+        Budget(String path, long bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+
+    // Called directly; bytes per call
+    private static final Budget ENCODE = new Budget("MotorFrameEncoder.encode", 0);
+    private static final Budget HISTORY = new Budget("MotorFrameHistory.encode", 0);
+    private static final Budget SENSOR_PULL = new Budget("CommandJsonEncoder.encodeSensorPull", 0);
+    private static final Budget ARBITRATION = new Budget("MotorCommandBus.getHighestPriorityCommand", 0);
+    private static final Budget ODOMETRY = new Budget("Odometry.update", 80); // the published Pose
+    private static final Budget HISTOGRAM = new Budget("LatencyHistogram.record", 0);
+
+    // Loops of a running robot; mean bytes per iteration from their alloc histograms
+    private static final Budget[] LOOPS = {
+        new Budget("robot.motorDispatch.alloc.bytes", 48), // DatagramSocket.send itself takes 40 on JDK 17
+        new Budget("controller." + MotorCommandBus.AUTONOMOUS + ".0.loop.alloc.bytes", 0),
+        new Budget("robot.pollSensors.alloc.bytes", 64),          // the SensorPullCommand, new per poll for the log policy
+        new Budget("robot.processSensorData.alloc.bytes", 10240), // Gson tree and Imu.Data
+        new Budget("robot.drainMotorFrames.alloc.bytes", 256),
+    };
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        if (!Allocations.isSupported()) {
+            System.err.println("This JVM has no per-thread allocation counters");
+            System.exit(-1);
+        }
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        List<String> failures = new ArrayList<>();
+        checkDirect(failures);
+        checkLoops(seconds, failures);
+
+        System.out.println(failures.isEmpty() ? "PASS" : "FAIL " + failures);
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private static void checkDirect(List<String> failures) {
+        int[] pwm = {12000, -34000, 56000, -65535};
+        byte[] frame = new byte[MotorFrameHistory.MAX_PACKET_BYTES];
+        MotorFrameHistory history = new MotorFrameHistory(3);
+        SensorPullCommand sensorPull = new SensorPullCommand("imu", 0, 1);
+        MotorCommandBus bus = new MotorCommandBus();
+        bus.updateCommand(MotorCommandBus.KEYBOARD, new MotorCommand(pwm, 1));
+        Odometry odometry = new Odometry();
+        LatencyHistogram histogram = Metrics.histogram("allocationCheck.histogram");
+
+        // Twice: the first pass warms up and lets the JIT remove what escape analysis can
+        for (int pass = 0; pass < 2; pass++) {
+            boolean report = pass == 1;
+            long start = Allocations.threadBytes();
+            for (int i = 0; i < DIRECT_ITERATIONS; i++) {
+                MotorFrameEncoder.encode(pwm, i, frame);
+            }
+            check(ENCODE, Allocations.threadBytes() - start, report, failures);
+
+            start = Allocations.threadBytes();
+            for (int i = 0; i < DIRECT_ITERATIONS; i++) {
+                history.encode(pwm, i, frame);
+            }
+            check(HISTORY, Allocations.threadBytes() - start, report, failures);
+
+            start = Allocations.threadBytes();
+            for (int i = 0; i < DIRECT_ITERATIONS; i++) {
+                CommandJsonEncoder.encodeSensorPull(sensorPull, frame, 0);
+            }
+            check(SENSOR_PULL, Allocations.threadBytes() - start, report, failures);
+
+            start = Allocations.threadBytes();
+            for (int i = 0; i < DIRECT_ITERATIONS; i++) {
+                bus.getHighestPriorityCommand(i);
+            }
+            check(ARBITRATION, Allocations.threadBytes() - start, report, failures);
+
+            start = Allocations.threadBytes();
+            for (int i = 0; i < DIRECT_ITERATIONS; i++) {
+                odometry.update(pwm, 10, (pass * DIRECT_ITERATIONS + i + 1) * 5_000_000L);
+            }
+            check(ODOMETRY, Allocations.threadBytes() - start, report, failures);
+
+            start = Allocations.threadBytes();
+            for (int i = 0; i < DIRECT_ITERATIONS; i++) {
+                histogram.record(i);
+            }
+            check(HISTOGRAM, Allocations.threadBytes() - start, report, failures);
+        }
+    }
+
+    private static void check(Budget budget, long totalBytes, boolean report, List<String> failures) {
+        if (!report) return;
+        double perCall = (double) totalBytes / DIRECT_ITERATIONS;
+        report(budget, perCall, failures);
+    }
+
+    private static void checkLoops(int seconds, List<String> failures) throws Exception {
+        System.setProperty("robot.sensorHz", "200");
+        System.setProperty("robot.motorHz", "200");
+        PicoSimulator simulator = new PicoSimulator(0, 0);
+        simulator.start();
+        RobotModel robot = RobotFactory.CreateRobot("127.0.0.1", simulator.getTcpPort(), simulator.getUdpPort());
+        if (robot == null) {
+            simulator.stop();
+            failures.add("robot did not start");
+            return;
+        }
+        Path liveState = Files.createTempFile("picow-livestate", ".bin");
+        liveState.toFile().deleteOnExit();
+        robot.exportLiveState(liveState);
+        robot.start();
+        HeadingHoldController controller = new HeadingHoldController(robot);
+        controller.setVelocity(0.2, 0);
+        controller.start();
+
+        // Measure after a warm-up second, from the histogram difference
+        Thread.sleep(1000);
+        LatencyHistogram.Snapshot[] before = new LatencyHistogram.Snapshot[LOOPS.length];
+        for (int i = 0; i < LOOPS.length; i++) {
+            before[i] = Metrics.histogram(LOOPS[i].path).snapshot();
+        }
+        Thread.sleep(seconds * 1000L);
+        for (int i = 0; i < LOOPS.length; i++) {
+            LatencyHistogram.Snapshot window = Metrics.histogram(LOOPS[i].path).snapshot().minus(before[i]);
+            if (window.getCount() == 0) {
+                failures.add(LOOPS[i].path + " never ran");
+                continue;
+            }
+            report(LOOPS[i], window.getMean(), failures);
+        }
+
+        controller.stop();
+        robot.stop();
+        simulator.stop();
+    }
+
+    private static void report(Budget budget, double bytes, List<String> failures) {
+        boolean ok = bytes <= budget.bytes;
+        System.out.printf("%-55s %10.1f bytes/iteration budget %6d %s%n", budget.path, bytes, budget.bytes, ok ? "ok" : "OVER");
+        if (!ok) {
+            failures.add(budget.path);
+        }
+    }
+}
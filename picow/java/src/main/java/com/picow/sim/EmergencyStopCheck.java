@@ -0,0 +1,154 @@
+package com.picow.sim;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.EmergencyStop;
+import com.picow.model.MotorCommandBus;
+import com.picow.model.RobotFactory;
+import com.picow.model.RobotModel;
+
+/**
+ * Latency budget check for the emergency stop lane against a local
+ * PicoSimulator. Each trial drives the robot from a higher-priority source
+ * than ANTI_COLLISION, triggers the stop and measures trigger-to-wire (all UDP
+ * copies sent), trigger-to-applied (simulator latched the stop) and
+ * trigger-to-ack (TCP confirmation back), and that motor frames apply again
+ * after each release. A last trial restarts the simulator while latched, like a
+ * firmware reset: the confirmation must drop with the link and the new firmware
+ * must be latched and confirm again. Exits with 1 if a p90 is over budget or
+ * the stop did not hold; p99 is only reported.
+ *
+ * Usage: EmergencyStopCheck [trials] [wireBudgetMillis] [appliedBudgetMillis] [ackBudgetMillis]
+ */
+public class EmergencyStopCheck {
+    // Five motor time constants of the default MecanumPhysics
+    private static final int HOLD_MILLIS = 400;
+
+    public static void main(String[] args) throws Exception {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        double wireBudget = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        double appliedBudget = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+        double ackBudget = args.length > 3 ? Double.parseDouble(args[3]) : 20;
+
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        PicoSimulator simulator = new PicoSimulator(0, 0);
+        simulator.start();
+        RobotModel robot = RobotFactory.CreateRobot("127.0.0.1", simulator.getTcpPort(), simulator.getUdpPort());
+        if (robot == null) {
+            System.err.println("Failed to initialize robot");
+            simulator.stop();
+            System.exit(-1);
+        }
+        robot.start();
+        EmergencyStop estop = robot.getEmergencyStop();
+        LatencyHistogram applied = Metrics.histogram("estopCheck.applied.nanos");
+
+        int failures = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            robot.setMotorPowers(new double[]{60, 60, 60, 60}, MotorCommandBus.KEYBOARD);
+            Thread.sleep(100);
+
+            long trigger = System.nanoTime();
+            robot.emergencyStop(MotorCommandBus.ANTI_COLLISION);
+            while (simulator.getEstopLatchedNanos() - trigger < 0 && System.nanoTime() - trigger < 1_000_000_000L) {
+                Thread.onSpinWait();
+            }
+            applied.record(simulator.getEstopLatchedNanos() - trigger);
+            while (!estop.isConfirmed() && System.nanoTime() - trigger < 1_000_000_000L) {
+                Thread.sleep(0, 100_000);
+            }
+            if (!estop.isConfirmed()) {
+                System.err.println("Trial " + trial + ": no TCP confirmation");
+                failures++;
+            }
+
+            // The keyboard keeps asking for speed; the latch must hold while the wheels spin down
+            long appliedBefore = simulator.getUdpApplied();
+            Thread.sleep(HOLD_MILLIS);
+            MecanumPhysics physics = simulator.getPhysics();
+            double speed;
+            synchronized (physics) {
+                speed = Math.hypot(physics.getVx(), physics.getVy());
+            }
+            if (simulator.getUdpApplied() != appliedBefore || speed > 0.05) {
+                System.err.printf("Trial %d: stop did not hold (speed %.3f m/s)%n", trial, speed);
+                failures++;
+            }
+            robot.releaseEmergencyStop();
+
+            // Late stop frames from before the release must not latch it again
+            long appliedAtRelease = simulator.getUdpApplied();
+            Thread.sleep(100);
+            if (simulator.getUdpApplied() == appliedAtRelease) {
+                System.err.println("Trial " + trial + ": stop did not release");
+                failures++;
+            }
+        }
+        simulator = restartWhileLatched(robot, simulator);
+        if (simulator == null) {
+            failures++;
+        }
+
+        robot.stop();
+        if (simulator != null) {
+            simulator.stop();
+        }
+
+        LatencyHistogram wire = Metrics.histogram("robot.estop.wire.nanos");
+        LatencyHistogram ack = Metrics.histogram("robot.estop.ack.nanos");
+        failures += report("trigger-to-wire", wire, wireBudget);
+        failures += report("trigger-to-applied", applied, appliedBudget);
+        failures += report("trigger-to-ack", ack, ackBudget);
+        System.out.println(failures == 0 ? "PASS" : "FAIL (" + failures + ")");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // Returns the new simulator, or null if the latch was not restored
+    private static PicoSimulator restartWhileLatched(RobotModel robot, PicoSimulator simulator) throws Exception {
+        EmergencyStop estop = robot.getEmergencyStop();
+        robot.emergencyStop(MotorCommandBus.ANTI_COLLISION);
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (!estop.isConfirmed() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        int tcpPort = simulator.getTcpPort();
+        int udpPort = simulator.getUdpPort();
+        simulator.stop();
+        deadline = System.nanoTime() + 3_000_000_000L;
+        while (estop.isConfirmed() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        if (estop.isConfirmed()) {
+            System.err.println("Restart: confirmation outlived the link");
+            return null;
+        }
+        PicoSimulator restarted = new PicoSimulator(tcpPort, udpPort);
+        restarted.start();
+        deadline = System.nanoTime() + 10_000_000_000L;
+        while (!estop.isConfirmed() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        robot.setMotorPowers(new double[]{60, 60, 60, 60}, MotorCommandBus.KEYBOARD);
+        Thread.sleep(HOLD_MILLIS);
+        boolean ok = estop.isConfirmed() && restarted.getEstopLatchedNanos() != 0 && restarted.getUdpApplied() == 0;
+        System.out.println("restart while latched: " + (ok ? "ok" : "latch lost"));
+        robot.releaseEmergencyStop();
+        return ok ? restarted : null;
+    }
+
+    // Gates on p90: with a few dozen trials p99 is just the max, one scheduler hiccup away from failing
+    private static int report(String label, LatencyHistogram histogram, double budgetMillis) {
+        double p50 = histogram.getP50() / 1e6;
+        double p90 = histogram.getP90() / 1e6;
+        boolean ok = p90 <= budgetMillis;
+        System.out.printf("%-20s n=%d p50=%.3f ms p90=%.3f ms p99=%.3f ms max=%.3f ms budget(p90)=%.1f ms %s%n",
+            label, histogram.getCount(), p50, p90, histogram.getP99() / 1e6, histogram.getMax() / 1e6,
+            budgetMillis, ok ? "ok" : "OVER");
+        return ok ? 0 : 1;
+    }
+}
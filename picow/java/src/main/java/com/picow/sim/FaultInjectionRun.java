@@ -0,0 +1,150 @@
+package com.picow.sim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.controller.HeadingHoldController;
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.RobotModel;
+import com.picow.model.sensors.Imu;
+import com.picow.network.DatagramTransport;
+import com.picow.network.FaultyDatagramTransport;
+import com.picow.network.FaultyStreamTransport;
+import com.picow.network.LinkFaults;
+import com.picow.network.StreamTransport;
+import com.picow.network.TcpTransport;
+import com.picow.network.UdpTransport;
+import com.picow.time.Clock;
+import com.picow.time.SystemClock;
+import com.picow.time.VirtualClock;
+
+/**
+ * Drives the heading-hold controller against a local PicoSimulator through
+ * FaultyStreamTransport and FaultyDatagramTransport, once per link profile,
+ * and prints one line of round trip, telemetry rate, motor frame delivery and
+ * step response per profile. "virtual" runs on a VirtualClock with the
+ * in-process transports and repeats exactly for a seed; "sockets" runs the
+ * real TCP and UDP transports over loopback in real time.
+ *
+ * Usage: FaultInjectionRun [seconds] [virtual|sockets] [seed]
+ */
+public class FaultInjectionRun {
+    private static final long STEP_MILLIS = 2500;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        boolean sockets = args.length > 1 && args[1].equals("sockets");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        System.setProperty("robot.sensorHz", "100");
+
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        System.out.printf("%-9s %9s %9s %9s %8s %9s %7s %9s %9s%n", "profile", "rtt p50", "rtt p99", "rtt p999",
+            "imu/s", "applied", "lost", "settled", "settle50");
+        for (Map.Entry<String, LinkFaults[]> profile : profiles(seed).entrySet()) {
+            run(profile.getKey(), profile.getValue(), seconds, sockets);
+        }
+        System.exit(0);
+    }
+
+    // Per profile: UDP out, TCP out, TCP in
+    private static Map<String, LinkFaults[]> profiles(long seed) {
+        Map<String, LinkFaults[]> profiles = new LinkedHashMap<>();
+        profiles.put("clean", new LinkFaults[]{LinkFaults.none(), LinkFaults.none(), LinkFaults.none()});
+        profiles.put("wifi", new LinkFaults[]{
+            new LinkFaults(seed).delay(2).jitter(4).tail(0.02, 40),
+            new LinkFaults(seed + 1).delay(2).jitter(4).tail(0.02, 40),
+            new LinkFaults(seed + 2).delay(2).jitter(4).tail(0.02, 40)});
+        profiles.put("lossy", new LinkFaults[]{
+            new LinkFaults(seed).delay(2).loss(0.05),
+            new LinkFaults(seed + 1).delay(2).loss(0.02),
+            new LinkFaults(seed + 2).delay(2).loss(0.02)});
+        profiles.put("bursty", new LinkFaults[]{
+            new LinkFaults(seed).delay(2).burstLoss(0.01, 10, 0.9),
+            new LinkFaults(seed + 1).delay(2).burstLoss(0.01, 10, 0.5),
+            new LinkFaults(seed + 2).delay(2).burstLoss(0.01, 10, 0.5)});
+        profiles.put("reorder", new LinkFaults[]{
+            new LinkFaults(seed).delay(2).jitter(2).reorder(0.1, 15),
+            new LinkFaults(seed + 1).delay(2).jitter(2),
+            new LinkFaults(seed + 2).delay(2).jitter(2)});
+        profiles.put("capped", new LinkFaults[]{
+            new LinkFaults(seed).delay(2).bandwidth(12_000),
+            new LinkFaults(seed + 1).delay(2).bandwidth(8_000),
+            new LinkFaults(seed + 2).delay(2).bandwidth(24_000)});
+        profiles.put("flapping", new LinkFaults[]{
+            new LinkFaults(seed).delay(2).outages(4000, 300),
+            new LinkFaults(seed + 1).delay(2).outages(6000, 300),
+            new LinkFaults(seed + 2).delay(2)});
+        return profiles;
+    }
+
+    private static void run(String name, LinkFaults[] faults, int seconds, boolean sockets) throws Exception {
+        Clock clock = sockets ? SystemClock.INSTANCE : new VirtualClock();
+        RobotLogger.setClock(clock);
+        PicoSimulator simulator = new PicoSimulator("127.0.0.1", 0, 0,
+            LinkImpairment.none(), LinkImpairment.none(), new MecanumPhysics(), clock);
+        StreamTransport tcp;
+        DatagramTransport udp;
+        if (sockets) {
+            simulator.start();
+            tcp = new TcpTransport("127.0.0.1", simulator.getTcpPort());
+            udp = new UdpTransport("127.0.0.1", simulator.getUdpPort());
+        } else {
+            simulator.startInProcess();
+            tcp = simulator.newStreamTransport();
+            udp = simulator.newDatagramTransport();
+        }
+        tcp = new FaultyStreamTransport(tcp, faults[1], faults[2], clock);
+        udp = new FaultyDatagramTransport(udp, faults[0], clock);
+        tcp.connect();
+        udp.connect();
+
+        LatencyHistogram rtt = Metrics.histogram("tcp.rtt.nanos");
+        Counter samples = Metrics.counter("robot.telemetrySamples");
+        Counter frames = Metrics.counter("robot.motorFrames");
+        LatencyHistogram.Snapshot rttBefore = rtt.snapshot();
+        long samplesBefore = samples.getCount();
+        long framesBefore = frames.getCount();
+
+        RobotModel robot = new RobotModel(null, new Imu(), tcp, udp, null, clock);
+        robot.start();
+        HeadingHoldController controller = new HeadingHoldController(robot);
+        LatencyHistogram.Snapshot settleBefore = controller.getSettleTime().snapshot();
+        controller.setVelocity(0.2, 0);
+        controller.start();
+
+        // Swing 60 degrees back and forth
+        ScheduledExecutorService steps = clock.newScheduler("fault-steps");
+        double[] target = {0};
+        steps.scheduleAtFixedRate(() -> {
+            target[0] = target[0] == 0 ? Math.toRadians(60) : 0;
+            controller.setHeading(target[0]);
+        }, 500, STEP_MILLIS, TimeUnit.MILLISECONDS);
+        if (clock instanceof VirtualClock) {
+            ((VirtualClock) clock).advance(seconds, TimeUnit.SECONDS);
+        } else {
+            Thread.sleep(seconds * 1000L);
+        }
+        steps.shutdownNow();
+        controller.stop();
+        robot.stop();
+        simulator.stop();
+
+        LatencyHistogram.Snapshot window = rtt.snapshot().minus(rttBefore);
+        LatencyHistogram.Snapshot settle = controller.getSettleTime().snapshot().minus(settleBefore);
+        long sent = frames.getCount() - framesBefore;
+        System.out.printf("%-9s %7.1fms %7.1fms %7.1fms %8.1f %8.1f%% %7d %4d/%-4d %7.0fms%n", name,
+            window.percentile(50) / 1e6, window.percentile(99) / 1e6, window.percentile(99.9) / 1e6,
+            (samples.getCount() - samplesBefore) / (double) seconds,
+            sent == 0 ? 0 : 100.0 * simulator.getUdpApplied() / sent, simulator.getUdpLost(),
+            settle.getCount(), (seconds * 1000 - 500) / STEP_MILLIS + 1, settle.percentile(50) / 1e6);
+    }
+}
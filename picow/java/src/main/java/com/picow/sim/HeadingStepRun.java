@@ -0,0 +1,73 @@
+package com.picow.sim;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.controller.HeadingHoldController;
+import com.picow.model.RobotFactory;
+import com.picow.model.RobotModel;
+
+/**
+ * Runs HeadingHoldController through a series of heading steps against a local
+ * PicoSimulator and prints the step response, so the effect of telemetry rate,
+ * motor rate and link delay on the loop can be compared run by run.
+ *
+ * Usage: HeadingStepRun [sensorHz] [motorHz] [delayMillis] [steps] [stepDegrees]
+ */
+public class HeadingStepRun {
+    private static final long STEP_MILLIS = 2500;
+
+    public static void main(String[] args) throws Exception {
+        int sensorHz = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int motorHz = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        double delay = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        double stepDegrees = args.length > 4 ? Double.parseDouble(args[4]) : 90;
+        System.setProperty("robot.sensorHz", Integer.toString(sensorHz));
+        System.setProperty("robot.motorHz", Integer.toString(motorHz));
+
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        PicoSimulator simulator = new PicoSimulator("127.0.0.1", 0, 0,
+            new LinkImpairment(1).delay(delay), new LinkImpairment(2).delay(delay), new MecanumPhysics());
+        simulator.start();
+        RobotModel robot = RobotFactory.CreateRobot("127.0.0.1", simulator.getTcpPort(), simulator.getUdpPort());
+        if (robot == null) {
+            System.err.println("Failed to initialize robot");
+            simulator.stop();
+            System.exit(-1);
+        }
+        robot.start();
+
+        HeadingHoldController controller = new HeadingHoldController(robot);
+        controller.start();
+        Thread.sleep(500);
+        double target = 0;
+        for (int i = 0; i < steps; i++) {
+            // Alternate left and right so the robot swings back and forth
+            target += (i % 2 == 0 ? 1 : -1) * Math.toRadians(stepDegrees);
+            controller.setHeading(target);
+            Thread.sleep(STEP_MILLIS);
+        }
+        double finalError;
+        synchronized (simulator.getPhysics()) {
+            finalError = Math.toDegrees(Math.IEEEremainder(target - simulator.getPhysics().getTheta(), 2 * Math.PI));
+        }
+        controller.stop();
+        robot.stop();
+        simulator.stop();
+
+        System.out.printf("sensor %d Hz, motor %d Hz, delay %.1f ms, %d steps of %.0f deg%n",
+            sensorHz, motorHz, delay, steps, stepDegrees);
+        System.out.printf("rise p50 %.0f ms max %.0f ms, settle p50 %.0f ms (%d of %d settled), last overshoot %.1f%%%n",
+            controller.getRiseTime().getP50() / 1e6, controller.getRiseTime().getMax() / 1e6,
+            controller.getSettleTime().getP50() / 1e6, controller.getSettleTime().getCount(), steps,
+            controller.getLastOvershootPermille() / 10.0);
+        System.out.printf("sample-to-action p50 %.0f us p99 %.0f us, loop p99 %.0f us, coalesced %d%n",
+            controller.getSampleToAction().getP50() / 1e3, controller.getSampleToAction().getP99() / 1e3,
+            controller.getLoopLatency().getP99() / 1e3, controller.getSamplesCoalesced().getCount());
+        System.out.printf("true heading error at the end %.1f deg (gyro-integrated heading drifts from it)%n", finalError);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.picow.sim;
+
+import java.util.Random;
+
+/**
+ * Processing delay, jitter, loss and reordering applied by the simulator to each
+ * message. Draws come from one seeded Random, so a run is repeatable for a given
+ * seed and message order.
+ */
+public class LinkImpairment {
+    private double delayMillis;
+    private double jitterMillis;
+    private double lossRate;
+    private double reorderRate;
+    private double reorderExtraMillis = 20;
+    private final Random random;
+
+    public LinkImpairment() {
+        this(0);
+    }
+
+    public LinkImpairment(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static LinkImpairment none() {
+        return new LinkImpairment();
+    }
+
+    public LinkImpairment delay(double millis) { this.delayMillis = millis; return this; }
+    public LinkImpairment jitter(double millis) { this.jitterMillis = millis; return this; }
+    public LinkImpairment loss(double rate) { this.lossRate = rate; return this; }
+
+    // A reordered message is held back by an extra delay so later ones overtake it
+    public LinkImpairment reorder(double rate, double extraMillis) {
+        this.reorderRate = rate;
+        this.reorderExtraMillis = extraMillis;
+        return this;
+    }
+
+    public synchronized boolean drop() {
+        return lossRate > 0 && random.nextDouble() < lossRate;
+    }
+
+    public synchronized long nextDelayNanos() {
+        double millis = delayMillis;
+        if (jitterMillis > 0) {
+            millis += random.nextDouble() * jitterMillis;
+        }
+        if (reorderRate > 0 && random.nextDouble() < reorderRate) {
+            millis += reorderExtraMillis;
+        }
+        return (long) (millis * 1_000_000);
+    }
+
+    @Override
+    public String toString() {
+        return "delay=" + delayMillis + "ms jitter=" + jitterMillis + "ms loss=" + lossRate
+            + " reorder=" + reorderRate + "/" + reorderExtraMillis + "ms";
+    }
+}
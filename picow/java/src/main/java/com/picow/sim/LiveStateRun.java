@@ -0,0 +1,117 @@
+package com.picow.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.LiveStateExport;
+import com.picow.model.LiveStateReader;
+import com.picow.model.MotorCommandBus;
+import com.picow.model.RobotFactory;
+import com.picow.model.RobotModel;
+
+/**
+ * Runs a robot against a local PicoSimulator with the live state export on,
+ * changes the AUTONOMOUS command every millisecond with four equal PWM values,
+ * and reads the file from a separate mapping as fast as it can. Every copy of
+ * the motor and source records must hold four equal values and sequences must
+ * never go backwards; exits with 1 on a torn or out-of-order read.
+ *
+ * Usage: LiveStateRun [seconds] [path]
+ */
+public class LiveStateRun {
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Path path = args.length > 1 ? Paths.get(args[1])
+            : Files.isDirectory(Paths.get("/dev/shm")) ? Paths.get("/dev/shm/picow-livestate")
+            : Files.createTempFile("picow-livestate", ".bin");
+        System.setProperty("robot.sensorHz", "200");
+        System.setProperty("robot.motorHz", "200");
+
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        PicoSimulator simulator = new PicoSimulator(0, 0);
+        simulator.start();
+        RobotModel robot = RobotFactory.CreateRobot("127.0.0.1", simulator.getTcpPort(), simulator.getUdpPort());
+        if (robot == null) {
+            System.err.println("Failed to initialize robot");
+            simulator.stop();
+            System.exit(-1);
+        }
+        robot.exportLiveState(path);
+        robot.start();
+
+        long end = System.currentTimeMillis() + seconds * 1000L;
+        Thread driver = new Thread(() -> {
+            double power = 0;
+            while (System.currentTimeMillis() < end) {
+                power = power >= 50 ? -50 : power + 0.5;
+                robot.setMotorPowers(new double[]{power, power, power, power}, MotorCommandBus.AUTONOMOUS);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "live-state-driver");
+        driver.start();
+
+        LatencyHistogram readLatency = Metrics.histogram("liveState.read.nanos");
+        ByteBuffer imu = ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer motor = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer source = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer link = ByteBuffer.allocate(104).order(ByteOrder.LITTLE_ENDIAN);
+        int autonomous = Arrays.asList(MotorCommandBus.getSources()).indexOf(MotorCommandBus.AUTONOMOUS);
+        int sourceOffset = LiveStateExport.SOURCES_OFFSET + autonomous * LiveStateExport.SOURCE_SLOT_BYTES;
+        long reads = 0, torn = 0, backwards = 0;
+        long lastImu = 0, lastMotor = 0, imuUpdates = 0, motorUpdates = 0;
+        try (LiveStateReader reader = new LiveStateReader(path)) {
+            while (System.currentTimeMillis() < end) {
+                long start = System.nanoTime();
+                long imuSeq = reader.read(LiveStateExport.IMU_OFFSET, imu);
+                long motorSeq = reader.read(LiveStateExport.MOTOR_OFFSET, motor);
+                reader.read(sourceOffset, source);
+                reader.read(LiveStateExport.LINK_OFFSET, link);
+                readLatency.recordSince(start);
+                reads++;
+                if (!equalPwm(motor) || !equalPwm(source)) {
+                    torn++;
+                }
+                if (imuSeq < lastImu || motorSeq < lastMotor) {
+                    backwards++;
+                }
+                imuUpdates += imuSeq != lastImu ? 1 : 0;
+                motorUpdates += motorSeq != lastMotor ? 1 : 0;
+                lastImu = imuSeq;
+                lastMotor = motorSeq;
+            }
+            driver.join();
+            robot.stop();
+            simulator.stop();
+
+            System.out.printf("%d reads of 4 records in %d s (%.0f/s), read p50 %d ns p99 %d ns, retries %d%n",
+                reads, seconds, reads / (double) seconds, readLatency.getP50(), readLatency.getP99(), reader.getRetries());
+            System.out.printf("imu updates seen %d of %d, motor updates seen %d of %d%n",
+                imuUpdates, lastImu, motorUpdates, lastMotor);
+            System.out.printf("last: gyro z %.2f deg/s, pwm %d, rtt p50 %.1f ms, telemetry %d, motor frames %d%n",
+                imu.getDouble(64), motor.getInt(16), link.getLong(16) / 1e6, link.getLong(40), link.getLong(48));
+        }
+        boolean ok = torn == 0 && backwards == 0 && lastImu > 0 && lastMotor > 0;
+        System.out.println(ok ? "PASS" : "FAIL torn=" + torn + " backwards=" + backwards);
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean equalPwm(ByteBuffer record) {
+        int first = record.getInt(16);
+        return record.getInt(20) == first && record.getInt(24) == first && record.getInt(28) == first;
+    }
+}
@@ -0,0 +1,81 @@
+package com.picow.sim;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.metrics.Metrics;
+import com.picow.model.MotorCommandBus;
+import com.picow.model.RobotFactory;
+import com.picow.model.RobotModel;
+
+/**
+ * Drives a RobotModel against a local PicoSimulator for a fixed time and prints
+ * the metrics, as a repeatable end-to-end throughput and latency measurement.
+ *
+ * Usage: LoopbackRun [seconds] [delayMillis] [jitterMillis] [lossRate] [direct|trajectory]
+ *
+ * Both modes drive the same smoothly varying arc. "direct" sets each setpoint as
+ * it is due; "trajectory" streams the next 200 ms as a lookahead plan.
+ */
+public class LoopbackRun {
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        double delay = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+        double jitter = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        double loss = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        boolean trajectory = args.length > 4 && args[4].equals("trajectory");
+
+        // Keep file logging out of the measurement
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        PicoSimulator simulator = new PicoSimulator("127.0.0.1", 0, 0,
+            new LinkImpairment(1).delay(delay).jitter(jitter).loss(loss),
+            new LinkImpairment(2).delay(delay).jitter(jitter).loss(loss),
+            new MecanumPhysics());
+        simulator.start();
+
+        RobotModel robot = RobotFactory.CreateRobot("127.0.0.1", simulator.getTcpPort(), simulator.getUdpPort());
+        if (robot == null) {
+            System.err.println("Failed to initialize robot");
+            simulator.stop();
+            System.exit(-1);
+        }
+        robot.start();
+
+        // Drive a left-turning arc whose speed swells and fades every 2 s
+        long begin = System.currentTimeMillis();
+        long end = begin + seconds * 1000L;
+        long[] offsets = new long[21];
+        double[][] powers = new double[offsets.length][];
+        while (System.currentTimeMillis() < end) {
+            long now = System.currentTimeMillis();
+            if (trajectory) {
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = i * 10L;
+                    powers[i] = arcPowers(now + offsets[i] - begin);
+                }
+                robot.followTrajectory(now, offsets, powers, MotorCommandBus.AUTONOMOUS);
+                Thread.sleep(100);
+            } else {
+                robot.setMotorPowers(arcPowers(now - begin), MotorCommandBus.AUTONOMOUS);
+                Thread.sleep(10);
+            }
+        }
+
+        robot.stop();
+        simulator.stop();
+
+        MecanumPhysics physics = simulator.getPhysics();
+        System.out.println(simulator);
+        System.out.printf("Simulated pose x=%.2f m y=%.2f m theta=%.1f deg%n",
+            physics.getX(), physics.getY(), Math.toDegrees(physics.getTheta()));
+        System.out.print(Metrics.dump());
+        System.exit(0);
+    }
+
+    private static double[] arcPowers(long elapsedMillis) {
+        double speed = 40 + 20 * Math.sin(2 * Math.PI * elapsedMillis / 2000.0);
+        return new double[]{speed * 0.6, speed, speed * 0.6, speed};
+    }
+}
@@ -0,0 +1,85 @@
+package com.picow.sim;
+
+/**
+ * Planar rigid-body model of a mecanum robot driven by the four PWM values.
+ * Wheel order and signs follow KeyboardController: all positive drives forward,
+ * {-1, 1, 1, -1} slides left and {-1, 1, -1, 1} rotates left (counter-clockwise).
+ * Each wheel approaches its PWM-proportional speed with a first-order lag.
+ */
+public class MecanumPhysics {
+    public static final double G = 9.80665;
+
+    private final double maxWheelSpeed;   // m/s of wheel surface at full PWM
+    private final double motorTimeConstant; // seconds
+    private final double halfTrackPlusBase; // lx + ly in meters
+
+    private final double[] targetWheel = new double[4];
+    private final double[] wheel = new double[4];
+
+    // World-frame pose and body-frame velocities
+    private double x, y, theta;
+    private double vx, vy, omega;
+    private double ax, ay; // body-frame acceleration of the last step
+
+    public MecanumPhysics() {
+        this(0.5, 0.08, 0.2);
+    }
+
+    public MecanumPhysics(double maxWheelSpeed, double motorTimeConstant, double halfTrackPlusBase) {
+        this.maxWheelSpeed = maxWheelSpeed;
+        this.motorTimeConstant = motorTimeConstant;
+        this.halfTrackPlusBase = halfTrackPlusBase;
+    }
+
+    public void setPwm(int[] pwm) {
+        for (int i = 0; i < 4; i++) {
+            int p = Math.max(-65535, Math.min(65535, pwm[i]));
+            targetWheel[i] = maxWheelSpeed * p / 65535.0;
+        }
+    }
+
+    public void step(double dt) {
+        double alpha = dt / (motorTimeConstant + dt);
+        for (int i = 0; i < 4; i++) {
+            wheel[i] += alpha * (targetWheel[i] - wheel[i]);
+        }
+
+        // Mecanum forward kinematics
+        double newVx = (wheel[0] + wheel[1] + wheel[2] + wheel[3]) / 4.0;
+        double newVy = (-wheel[0] + wheel[1] + wheel[2] - wheel[3]) / 4.0;
+        double newOmega = (-wheel[0] + wheel[1] - wheel[2] + wheel[3]) / (4.0 * halfTrackPlusBase);
+
+        // Body-frame acceleration including the centripetal terms
+        ax = (newVx - vx) / dt - newOmega * newVy;
+        ay = (newVy - vy) / dt + newOmega * newVx;
+        vx = newVx;
+        vy = newVy;
+        omega = newOmega;
+
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        x += (vx * cos - vy * sin) * dt;
+        y += (vx * sin + vy * cos) * dt;
+        theta += omega * dt;
+    }
+
+    public double getX() { return x; }
+    public double getY() { return y; }
+    public double getTheta() { return theta; }
+    public double getVx() { return vx; }
+    public double getVy() { return vy; }
+    public double getOmega() { return omega; }
+
+    // IMU readings in the units the firmware reports: g and degrees/s
+    public double getAccelG(int axis) {
+        switch (axis) {
+            case 0: return ax / G;
+            case 1: return ay / G;
+            default: return 1.0;
+        }
+    }
+
+    public double getGyroDps(int axis) {
+        return axis == 2 ? Math.toDegrees(omega) : 0.0;
+    }
+}
@@ -0,0 +1,634 @@
+package com.picow.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.picow.network.DatagramTransport;
+import com.picow.network.StreamTransport;
+import com.picow.time.Clock;
+import com.picow.time.SystemClock;
+
+/**
+ * Stand-in for the Pico firmware in micropython/main.py: a TCP server answering
+ * "imu" and "udp_stats" pulls line by line and a UDP listener applying "motor"
+ * PWM commands, newest sequence number only, counting frames recovered from
+ * redundant history. Frames with a lookahead "plan" are played out on the
+ * simulator's clock with linear interpolation until a plain frame replaces them.
+ * An "estop" UDP frame or TCP request latches a stop until "estop_release",
+ * across client connections; flagged frames older than the release are ignored.
+ * The IMU readings come from a MecanumPhysics model driven by the received PWM.
+ * Ports may be 0 to bind ephemeral ports; query them with getTcpPort()/getUdpPort().
+ * startInProcess() skips the sockets; the robot then talks to the simulator
+ * through newStreamTransport()/newDatagramTransport(), which together with a
+ * VirtualClock runs a whole robot stack faster than real time.
+ */
+public class PicoSimulator {
+    private static final double PHYSICS_STEP_SECONDS = 0.001;
+    private static final long SEQ_RESTART_GAP = 1000;
+    private static final long PLAYOUT_PERIOD_MICROS = 5000;
+
+    private final String bindAddress;
+    private final int requestedTcpPort;
+    private final int requestedUdpPort;
+    private final LinkImpairment tcpImpairment;
+    private final LinkImpairment udpImpairment;
+    private final MecanumPhysics physics;
+    private final Clock clock;
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private ServerSocket serverSocket;
+    private DatagramSocket udpSocket;
+    private ScheduledExecutorService delivery;
+    private Thread tcpThread;
+    private Thread udpThread;
+    private long lastStepNanos;
+
+    // Counters
+    private final AtomicLong tcpRequests = new AtomicLong();
+    private final AtomicLong tcpResponses = new AtomicLong();
+    private final AtomicLong tcpDropped = new AtomicLong();
+    private final AtomicLong udpReceived = new AtomicLong();
+    private final AtomicLong udpApplied = new AtomicLong();
+    private final AtomicLong udpDropped = new AtomicLong();
+    private final AtomicLong udpRecovered = new AtomicLong();
+    private final AtomicLong udpLost = new AtomicLong();
+    private final AtomicLong udpStale = new AtomicLong();
+    private long lastSeq; // delivery thread only; 0 before the first numbered frame
+    private long[] planNanos;  // delivery thread only; null when no plan is playing
+    private int[][] planPoints;
+    private boolean estopLatched; // delivery thread only
+    private long estopReleasedAt; // delivery thread only
+    private volatile long estopLatchedNanos;
+    private final AtomicLong estopIgnored = new AtomicLong();
+
+    public PicoSimulator(int tcpPort, int udpPort) {
+        this("127.0.0.1", tcpPort, udpPort, LinkImpairment.none(), LinkImpairment.none(), new MecanumPhysics());
+    }
+
+    public PicoSimulator(String bindAddress, int tcpPort, int udpPort,
+                         LinkImpairment tcpImpairment, LinkImpairment udpImpairment, MecanumPhysics physics) {
+        this(bindAddress, tcpPort, udpPort, tcpImpairment, udpImpairment, physics, SystemClock.INSTANCE);
+    }
+
+    public PicoSimulator(String bindAddress, int tcpPort, int udpPort, LinkImpairment tcpImpairment,
+                         LinkImpairment udpImpairment, MecanumPhysics physics, Clock clock) {
+        this.clock = clock;
+        this.bindAddress = bindAddress;
+        this.requestedTcpPort = tcpPort;
+        this.requestedUdpPort = udpPort;
+        this.tcpImpairment = tcpImpairment;
+        this.udpImpairment = udpImpairment;
+        this.physics = physics;
+    }
+
+    public void start() throws IOException {
+        if (running.get()) return;
+
+        InetAddress address = InetAddress.getByName(bindAddress);
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(address, requestedTcpPort), 1);
+        udpSocket = new DatagramSocket(new InetSocketAddress(address, requestedUdpPort));
+        startDelivery();
+
+        tcpThread = new Thread(this::serveTcp, "pico-sim-tcp");
+        tcpThread.setDaemon(true);
+        tcpThread.start();
+        udpThread = new Thread(this::serveUdp, "pico-sim-udp");
+        udpThread.setDaemon(true);
+        udpThread.start();
+    }
+
+    // Without sockets; connect through newStreamTransport() and newDatagramTransport()
+    public void startInProcess() {
+        if (running.get()) return;
+        startDelivery();
+    }
+
+    private void startDelivery() {
+        delivery = clock.newScheduler("pico-sim-delivery");
+        lastStepNanos = clock.nanoTime();
+        running.set(true);
+        delivery.scheduleAtFixedRate(this::playPlan, PLAYOUT_PERIOD_MICROS, PLAYOUT_PERIOD_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    public void stop() {
+        if (!running.getAndSet(false)) return;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            udpSocket.close();
+        }
+        delivery.shutdownNow();
+        if (tcpThread != null) {
+            try {
+                tcpThread.join(1000);
+                udpThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getTcpPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    public int getUdpPort() {
+        return udpSocket != null ? udpSocket.getLocalPort() : -1;
+    }
+
+    public StreamTransport newStreamTransport() {
+        return new InProcessStream();
+    }
+
+    public DatagramTransport newDatagramTransport() {
+        return new InProcessDatagram();
+    }
+
+    public MecanumPhysics getPhysics() {
+        return physics;
+    }
+
+    // Like the firmware, serve one TCP client at a time
+    private void serveTcp() {
+        while (running.get()) {
+            try (Socket client = serverSocket.accept()) {
+                client.setTcpNoDelay(true);
+                if (!clientConnected()) {
+                    return; // stopped
+                }
+                OutputStream out = client.getOutputStream();
+                LineSink sink = response -> {
+                    byte[] bytes = (response + "\n").getBytes(StandardCharsets.UTF_8);
+                    synchronized (out) {
+                        out.write(bytes);
+                        out.flush();
+                    }
+                };
+                BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while (running.get() && (line = in.readLine()) != null) {
+                    if (!receiveTcpLine(line, sink)) {
+                        return; // stopped while a client was connected
+                    }
+                }
+                if (!clientLost()) {
+                    return; // stopped
+                }
+            } catch (IOException e) {
+                if (running.get()) {
+                    System.err.println("Simulator TCP error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private interface LineSink {
+        void write(String line) throws IOException;
+    }
+
+    // A new client restarts its frame numbering; a latched stop holds. False once stopped
+    private boolean clientConnected() {
+        try {
+            delivery.execute(() -> lastSeq = 0);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    // Firmware stops the motors, and any plan, when the TCP client goes away
+    private boolean clientLost() {
+        try {
+            delivery.execute(() -> {
+                planNanos = null;
+                planPoints = null;
+                synchronized (physics) {
+                    physics.setPwm(new int[]{0, 0, 0, 0});
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private boolean receiveTcpLine(String line, LineSink sink) {
+        if (line.trim().isEmpty()) return true;
+        tcpRequests.incrementAndGet();
+        if (tcpImpairment.drop()) {
+            tcpDropped.incrementAndGet();
+            return true;
+        }
+        try {
+            delivery.schedule(() -> respond(sink, line), tcpImpairment.nextDelayNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void respond(LineSink sink, String request) {
+        JsonObject response;
+        try {
+            JsonObject command = gson.fromJson(request, JsonObject.class);
+            response = command;
+            JsonElement type = command.get("type");
+            if (type != null && "imu".equals(type.getAsString())) {
+                response.add("data", readImu());
+                response.add("error", JsonNull.INSTANCE);
+            } else if (type != null && ("estop".equals(type.getAsString()) || "estop_release".equals(type.getAsString()))) {
+                if ("estop".equals(type.getAsString())) {
+                    latchStop();
+                } else {
+                    estopLatched = false;
+                    JsonElement timestamp = command.get("timestamp");
+                    if (timestamp != null) {
+                        estopReleasedAt = Math.max(estopReleasedAt, timestamp.getAsLong());
+                    }
+                }
+                JsonObject data = new JsonObject();
+                data.addProperty("latched", estopLatched);
+                response.add("data", data);
+                response.add("error", JsonNull.INSTANCE);
+            } else if (type != null && "udp_stats".equals(type.getAsString())) {
+                response.add("data", udpStats());
+                response.add("error", JsonNull.INSTANCE);
+            } else {
+                response.add("error", gson.toJsonTree("Unknown command type"));
+                response.add("data", JsonNull.INSTANCE);
+            }
+        } catch (Exception e) {
+            response = new JsonObject();
+            response.addProperty("type", "error");
+            response.addProperty("data", String.valueOf(e.getMessage()));
+        }
+        try {
+            sink.write(gson.toJson(response));
+            tcpResponses.incrementAndGet();
+        } catch (IOException e) {
+            // Client went away; the accept loop notices
+        }
+    }
+
+    private JsonObject readImu() {
+        JsonArray accel = new JsonArray();
+        JsonArray gyro = new JsonArray();
+        synchronized (physics) {
+            advance();
+            for (int axis = 0; axis < 3; axis++) {
+                accel.add(physics.getAccelG(axis));
+                gyro.add(physics.getGyroDps(axis));
+            }
+        }
+        JsonObject data = new JsonObject();
+        data.add("accel_g", accel);
+        data.add("gyro_dps", gyro);
+        data.addProperty("temp_c", 30.0);
+        return data;
+    }
+
+    private JsonObject udpStats() {
+        JsonObject data = new JsonObject();
+        data.addProperty("received", getUdpReceived());
+        data.addProperty("applied", getUdpApplied());
+        data.addProperty("recovered", getUdpRecovered());
+        data.addProperty("lost", getUdpLost());
+        data.addProperty("stale", getUdpStale());
+        data.addProperty("estop_ignored", getEstopIgnored());
+        return data;
+    }
+
+    private void serveUdp() {
+        byte[] buffer = new byte[1024];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (running.get()) {
+            try {
+                packet.setLength(buffer.length);
+                udpSocket.receive(packet);
+                receiveDatagram(new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                if (running.get()) {
+                    System.err.println("Simulator UDP error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receiveDatagram(String message) {
+        udpReceived.incrementAndGet();
+        if (udpImpairment.drop()) {
+            udpDropped.incrementAndGet();
+            return;
+        }
+        try {
+            delivery.schedule(() -> applyMotorCommand(message), udpImpairment.nextDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+
+    private void applyMotorCommand(String message) {
+        try {
+            JsonObject command = gson.fromJson(message, JsonObject.class);
+            if (!"motor".equals(command.get("type").getAsString())) return;
+            JsonElement estop = command.get("estop");
+            if (estop != null && estop.getAsBoolean()) {
+                // Copies sent before the last release must not latch again
+                JsonElement timestamp = command.get("timestamp");
+                if (timestamp == null || timestamp.getAsLong() > estopReleasedAt) {
+                    latchStop();
+                }
+                return;
+            }
+            if (estopLatched) {
+                estopIgnored.incrementAndGet();
+                return;
+            }
+            if (!acceptSequence(command)) {
+                udpStale.incrementAndGet();
+                return;
+            }
+            JsonArray pwm = command.getAsJsonArray("pwm");
+            int[] values = new int[4];
+            for (int i = 0; i < 4 && i < pwm.size(); i++) {
+                values[i] = pwm.get(i).getAsInt();
+            }
+            // A plan starts at the frame's own setpoint; a plain frame stops any plan at once
+            JsonArray plan = command.getAsJsonArray("plan");
+            if (plan != null && plan.size() > 0) {
+                long now = clock.nanoTime();
+                planNanos = new long[plan.size() + 1];
+                planPoints = new int[plan.size() + 1][];
+                planNanos[0] = now;
+                planPoints[0] = values;
+                for (int p = 0; p < plan.size(); p++) {
+                    JsonArray point = plan.get(p).getAsJsonArray();
+                    planNanos[p + 1] = now + point.get(0).getAsLong() * 1_000_000L;
+                    planPoints[p + 1] = new int[4];
+                    for (int i = 0; i < 4 && i + 1 < point.size(); i++) {
+                        planPoints[p + 1][i] = point.get(i + 1).getAsInt();
+                    }
+                }
+            } else {
+                planNanos = null;
+                planPoints = null;
+            }
+            synchronized (physics) {
+                advance();
+                physics.setPwm(values);
+            }
+            udpApplied.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("Simulator invalid UDP command: " + e.getMessage());
+        }
+    }
+
+    // Delivery thread
+    private void latchStop() {
+        if (!estopLatched) {
+            estopLatched = true;
+            estopLatchedNanos = clock.nanoTime();
+        }
+        planNanos = null;
+        planPoints = null;
+        synchronized (physics) {
+            advance();
+            physics.setPwm(new int[]{0, 0, 0, 0});
+        }
+    }
+
+    // Delivery thread: interpolate the current plan, like the firmware's play()
+    private void playPlan() {
+        long[] times = planNanos;
+        if (times == null) return;
+        int[][] points = planPoints;
+        long now = clock.nanoTime();
+        int next = 1;
+        while (next < times.length && times[next] <= now) {
+            next++;
+        }
+        int[] values = new int[4];
+        if (next == times.length) {
+            values = points[times.length - 1];
+            planNanos = null; // hold the last point
+            planPoints = null;
+        } else {
+            int prev = next - 1;
+            double f = (double) (now - times[prev]) / (times[next] - times[prev]);
+            for (int i = 0; i < 4; i++) {
+                values[i] = (int) Math.round(points[prev][i] + (points[next][i] - points[prev][i]) * f);
+            }
+        }
+        synchronized (physics) {
+            advance();
+            physics.setPwm(values);
+        }
+    }
+
+    // Same rules as the firmware: apply only frames newer than the last applied one, and count
+    // skipped frames that arrived in a later datagram's history as recovered, the rest as lost
+    private boolean acceptSequence(JsonObject command) {
+        JsonElement seqElement = command.get("seq");
+        if (seqElement == null) {
+            return true; // sender without sequence numbers
+        }
+        long seq = seqElement.getAsLong();
+        if (seq <= lastSeq && seq != 1 && lastSeq - seq < SEQ_RESTART_GAP) {
+            return false;
+        }
+        if (lastSeq > 0 && seq > lastSeq) {
+            long recovered = 0;
+            JsonArray history = command.getAsJsonArray("history");
+            if (history != null) {
+                for (JsonElement entry : history) {
+                    long s = entry.getAsJsonArray().get(0).getAsLong();
+                    if (s > lastSeq && s < seq) {
+                        recovered++;
+                    }
+                }
+            }
+            udpRecovered.addAndGet(recovered);
+            udpLost.addAndGet(seq - lastSeq - 1 - recovered);
+        }
+        lastSeq = seq;
+        return true;
+    }
+
+    // Integrate the physics up to now in fixed steps; caller holds the physics lock
+    private void advance() {
+        long now = clock.nanoTime();
+        long stepNanos = (long) (PHYSICS_STEP_SECONDS * 1e9);
+        while (now - lastStepNanos >= stepNanos) {
+            physics.step(PHYSICS_STEP_SECONDS);
+            lastStepNanos += stepNanos;
+        }
+    }
+
+    public long getTcpRequests() { return tcpRequests.get(); }
+    public long getTcpResponses() { return tcpResponses.get(); }
+    public long getTcpDropped() { return tcpDropped.get(); }
+    public long getUdpReceived() { return udpReceived.get(); }
+    public long getUdpApplied() { return udpApplied.get(); }
+    public long getUdpDropped() { return udpDropped.get(); }
+    public long getUdpRecovered() { return udpRecovered.get(); }
+    public long getUdpLost() { return udpLost.get(); }
+    public long getUdpStale() { return udpStale.get(); }
+    public long getEstopIgnored() { return estopIgnored.get(); }
+    // Clock nanos (System.nanoTime() in real time) at which the latest emergency stop was applied
+    public long getEstopLatchedNanos() { return estopLatchedNanos; }
+
+    // Stands in for the TCP socket: lines go through the same impairment and handling, replies are
+    // pushed to the line handler from the delivery scheduler
+    private class InProcessStream implements StreamTransport {
+        private volatile boolean connected;
+        private volatile Consumer<String> handler;
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) return;
+            if (!running.get() || !clientConnected()) {
+                throw new IOException("Simulator not running");
+            }
+            connected = true;
+        }
+
+        @Override
+        public void disconnect() {
+            if (!connected) return;
+            connected = false;
+            clientLost();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void send(String data) throws IOException {
+            if (!connected) {
+                throw new IOException("TCP Not connected");
+            }
+            for (String line : data.split("\n")) {
+                receiveTcpLine(line, response -> {
+                    Consumer<String> h = handler;
+                    if (connected && h != null) {
+                        h.accept(response);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public String read() {
+            return null; // replies are pushed
+        }
+
+        @Override
+        public boolean supportsPush() {
+            return true;
+        }
+
+        @Override
+        public void setLineHandler(Consumer<String> handler) {
+            this.handler = handler;
+        }
+    }
+
+    private class InProcessDatagram implements DatagramTransport {
+        private volatile boolean connected;
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void send(String data) throws IOException {
+            if (!connected) {
+                throw new IOException("UDP Not connected");
+            }
+            receiveDatagram(data);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tcp requests=%d responses=%d dropped=%d, udp received=%d applied=%d dropped=%d"
+                + " recovered=%d lost=%d stale=%d",
+            getTcpRequests(), getTcpResponses(), getTcpDropped(), getUdpReceived(), getUdpApplied(), getUdpDropped(),
+            getUdpRecovered(), getUdpLost(), getUdpStale());
+    }
+
+    // Usage: PicoSimulator [--tcp 8080] [--udp 8081] [--bind 127.0.0.1] [--delay ms] [--jitter ms]
+    //        [--loss rate] [--reorder rate] [--seed n]
+    public static void main(String[] args) throws Exception {
+        int tcpPort = 8080;
+        int udpPort = 8081;
+        String bind = "127.0.0.1";
+        double delay = 0, jitter = 0, loss = 0, reorder = 0;
+        long seed = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--tcp": tcpPort = Integer.parseInt(value); break;
+                case "--udp": udpPort = Integer.parseInt(value); break;
+                case "--bind": bind = value; break;
+                case "--delay": delay = Double.parseDouble(value); break;
+                case "--jitter": jitter = Double.parseDouble(value); break;
+                case "--loss": loss = Double.parseDouble(value); break;
+                case "--reorder": reorder = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        LinkImpairment tcp = new LinkImpairment(seed).delay(delay).jitter(jitter).loss(loss);
+        LinkImpairment udp = new LinkImpairment(seed + 1).delay(delay).jitter(jitter).loss(loss).reorder(reorder, 20);
+        PicoSimulator simulator = new PicoSimulator(bind, tcpPort, udpPort, tcp, udp, new MecanumPhysics());
+        simulator.start();
+        System.out.println("Pico simulator on " + bind + " tcp " + simulator.getTcpPort() + " udp " + simulator.getUdpPort()
+            + " (" + udp + ")");
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println(simulator);
+        }
+    }
+}
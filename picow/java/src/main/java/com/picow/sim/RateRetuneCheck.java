@@ -0,0 +1,220 @@
+package com.picow.sim;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.controller.ControllerBase;
+import com.picow.model.RobotModel;
+import com.picow.model.RobotSettings;
+import com.picow.model.sensors.Imu;
+import com.picow.network.TcpTransport;
+import com.picow.network.UdpTransport;
+
+/**
+ * Retunes a running robot over JMX, the way an operator would from a JMX
+ * console, and checks that the loops follow: a named robot on a shared
+ * scheduler (so both the sensor poll and the motor send are rescheduled
+ * tasks) and one periodic controller run against a local PicoSimulator
+ * through several rate changes. Every IMU poll and motor datagram is
+ * timestamped as it goes out; each phase must run at its new rate and the
+ * total count must match the phases, so a change neither skips nor doubles a
+ * frame, and no gap may stall the loop. Finally the profile is saved,
+ * overwritten and loaded back. Exits with 1 on any failure.
+ *
+ * Usage: RateRetuneCheck [secondsPerPhase]
+ */
+public class RateRetuneCheck {
+    private static final String NAME = "retune";
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int[][] PHASES = {{20, 100, 10}, {100, 50, 50}, {10, 200, 25}, {50, 20, 40}}; // sensor, motor, controller Hz
+
+    // Send times in nanos, appended from the scheduler threads
+    private static final class Stamps {
+        private final long[] times = new long[200_000];
+        private int count;
+
+        synchronized void add(long nanos) {
+            if (count < times.length) {
+                times[count++] = nanos;
+            }
+        }
+
+        synchronized long[] between(long from, long to) {
+            List<Long> selected = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (times[i] >= from && times[i] < to) {
+                    selected.add(times[i]);
+                }
+            }
+            return selected.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        Path profileDir = Files.createTempDirectory("picow-profiles");
+        System.setProperty("robot.profileDir", profileDir.toString());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        PicoSimulator simulator = new PicoSimulator(0, 0);
+        simulator.start();
+        Stamps polls = new Stamps();
+        Stamps frames = new Stamps();
+        TcpTransport tcp = new TcpTransport("127.0.0.1", simulator.getTcpPort()) {
+            @Override
+            public void send(byte[] data, int length) throws IOException {
+                if (data[16] == 'i') { // {"id":0,"type":"imu"..., not udp_stats
+                    polls.add(System.nanoTime());
+                }
+                super.send(data, length);
+            }
+        };
+        UdpTransport udp = new UdpTransport("127.0.0.1", simulator.getUdpPort()) {
+            @Override
+            public synchronized void send(byte[] data, int length) throws IOException {
+                frames.add(System.nanoTime());
+                super.send(data, length);
+            }
+        };
+        tcp.connect();
+        udp.connect();
+        if (!tcp.awaitConnected(2000)) {
+            System.err.println("No TCP connection to the simulator");
+            System.exit(-1);
+        }
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(2);
+        scheduler.setRemoveOnCancelPolicy(true);
+        System.setProperty("robot.sensorHz", Integer.toString(PHASES[0][0]));
+        System.setProperty("robot.motorHz", Integer.toString(PHASES[0][1]));
+        RobotModel robot = new RobotModel(NAME, new Imu(), tcp, udp, scheduler);
+        AtomicLong loops = new AtomicLong();
+        ControllerBase controller = new ControllerBase(robot, "0", "RateCheck", PHASES[0][2]) {
+            @Override protected void init() { }
+            @Override protected void readSensors() { }
+            @Override protected void takeActions() { loops.incrementAndGet(); }
+        };
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName settings = new ObjectName("com.picow:type=Settings,name=" + ObjectName.quote(NAME));
+        for (int i = 0; i < 100 && !server.isRegistered(settings); i++) {
+            Thread.sleep(20);
+        }
+        robot.start();
+        controller.start();
+
+        List<String> failures = new ArrayList<>();
+        long[] phaseStart = new long[PHASES.length + 1];
+        long[] loopStart = new long[PHASES.length + 1];
+        long[] loopCounts = new long[PHASES.length + 1];
+        phaseStart[0] = System.nanoTime();
+        loopStart[0] = phaseStart[0];
+        for (int p = 0; p < PHASES.length; p++) {
+            if (p > 0) {
+                server.setAttribute(settings, new Attribute("SensorPollRate", PHASES[p][0]));
+                server.setAttribute(settings, new Attribute("MotorSendRate", PHASES[p][1]));
+                server.invoke(settings, "setControllerRate", new Object[]{controller.getSettingsKey(), PHASES[p][2]},
+                    new String[]{String.class.getName(), int.class.getName()});
+                phaseStart[p] = System.nanoTime();
+                // The controller is asleep for the rest of its old period
+                Thread.sleep(1000 / PHASES[p - 1][2]);
+                loopStart[p] = System.nanoTime();
+                loopCounts[p] = loops.get();
+            }
+            Thread.sleep((long) (seconds * 1000) - (loopStart[p] - phaseStart[p]) / 1_000_000);
+        }
+        phaseStart[PHASES.length] = System.nanoTime();
+        loopStart[PHASES.length] = phaseStart[PHASES.length];
+        loopCounts[PHASES.length] = loops.get();
+
+        System.out.printf("%-6s %-22s %-22s %-22s%n", "phase", "sensor Hz set/seen", "motor Hz set/seen", "controller Hz set/seen");
+        for (int p = 0; p < PHASES.length; p++) {
+            // The first period after a change still belongs to the old rate
+            long from = phaseStart[p] + (p == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / Math.min(PHASES[p - 1][0], PHASES[p][0]));
+            double sensorSeen = rate(polls.between(from, phaseStart[p + 1]));
+            double motorSeen = rate(frames.between(phaseStart[p], phaseStart[p + 1]));
+            double controllerSeen = (loopCounts[p + 1] - loopCounts[p]) / ((loopStart[p + 1] - loopStart[p]) / 1e9);
+            System.out.printf("%-6d %6d / %-13.1f %6d / %-13.1f %6d / %-13.1f%n", p,
+                PHASES[p][0], sensorSeen, PHASES[p][1], motorSeen, PHASES[p][2], controllerSeen);
+            checkRate("sensor phase " + p, PHASES[p][0], sensorSeen, failures);
+            checkRate("motor phase " + p, PHASES[p][1], motorSeen, failures);
+            checkRate("controller phase " + p, PHASES[p][2], controllerSeen, failures);
+        }
+        checkSpacing("sensor", polls, phaseStart, 0, failures);
+        checkSpacing("motor", frames, phaseStart, 1, failures);
+
+        // Profile round trip: save, overwrite, load back
+        String path = (String) server.invoke(settings, "saveProfile", null, null);
+        server.setAttribute(settings, new Attribute("SensorPollRate", 33));
+        server.setAttribute(settings, new Attribute("TcpMaxQueuedSends", 9));
+        controller.setFrequency(7);
+        int[] last = PHASES[PHASES.length - 1];
+        boolean loaded = (Boolean) server.invoke(settings, "loadProfile", null, null);
+        RobotSettings restored = robot.getSettings();
+        List<String> lines = Files.readAllLines(Path.of(path));
+        System.out.printf("profile %s: %s%n", path, String.join(" ", lines.subList(2, lines.size()))); // after the comments
+        if (!loaded || restored.getSensorPollRate() != last[0] || restored.getMotorSendRate() != last[1]
+                || controller.getFrequency() != last[2] || restored.getTcpMaxQueuedSends() != TcpTransport.DEFAULT_MAX_QUEUED_SENDS) {
+            failures.add("profile: sensor " + restored.getSensorPollRate() + " motor " + restored.getMotorSendRate()
+                + " controller " + controller.getFrequency() + " queued " + restored.getTcpMaxQueuedSends());
+        }
+
+        controller.stop();
+        robot.stop();
+        scheduler.shutdown();
+        simulator.stop();
+        System.out.println(failures.isEmpty() ? "PASS" : "FAIL " + failures);
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private static double rate(long[] times) {
+        return times.length < 2 ? 0 : (times.length - 1) / ((times[times.length - 1] - times[0]) / 1e9);
+    }
+
+    private static void checkRate(String what, int expected, double seen, List<String> failures) {
+        if (Math.abs(seen - expected) > 0.1 * expected) {
+            failures.add(what + " at " + String.format("%.1f", seen) + " Hz");
+        }
+    }
+
+    // Fixed-rate tasks catch up after a late run, so skipped or doubled frames show in the count; gaps only for stalls
+    private static void checkSpacing(String what, Stamps stamps, long[] phaseStart, int column, List<String> failures) {
+        long[] times = stamps.between(phaseStart[0], phaseStart[PHASES.length]);
+        double expected = 0;
+        for (int p = 0; p < PHASES.length; p++) {
+            expected += (phaseStart[p + 1] - phaseStart[p]) / 1e9 * PHASES[p][column];
+        }
+        long worst = 0;
+        int phase = 0;
+        for (int i = 1; i < times.length; i++) {
+            while (phase + 1 < PHASES.length && times[i] >= phaseStart[phase + 1]) {
+                phase++;
+            }
+            long longest = TimeUnit.SECONDS.toNanos(1) / Math.min(PHASES[phase][column], PHASES[Math.max(0, phase - 1)][column]);
+            long gap = times[i] - times[i - 1];
+            worst = Math.max(worst, gap - longest);
+            if (gap > longest + STALL_NANOS) {
+                failures.add(what + " gap " + gap / 1_000_000 + " ms in phase " + phase);
+            }
+        }
+        System.out.printf("%s: %d sent, %.0f expected, worst gap %.1f ms over the period%n",
+            what, times.length, expected, worst / 1e6);
+        if (Math.abs(times.length - expected) > expected * 0.01 + PHASES.length) {
+            failures.add(what + " sent " + times.length + " for " + Math.round(expected));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.picow.sim;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.picow.LogPolicy;
+import com.picow.RobotLogger;
+import com.picow.controller.HeadingHoldController;
+import com.picow.model.Odometry;
+import com.picow.model.RobotModel;
+import com.picow.model.sensors.Imu;
+import com.picow.network.DatagramTransport;
+import com.picow.network.StreamTransport;
+import com.picow.time.VirtualClock;
+
+/**
+ * Soak run of the whole robot stack (heading-hold controller, command bus,
+ * RobotModel, in-process transports, PicoSimulator) on a VirtualClock, so
+ * hours of driving take seconds. The robot drives forward and turns to a new
+ * random heading every few seconds over an impaired link. Exits with 1 if a
+ * step failed to settle or dead reckoning drifted too far from the physics.
+ *
+ * Usage: VirtualSoakRun [simulatedMinutes] [sensorHz] [seed]
+ */
+public class VirtualSoakRun {
+    private static final long STEP_SECONDS = 5;
+    private static final double MAX_ODOMETRY_ERROR_METERS = 0.5;
+
+    public static void main(String[] args) throws Exception {
+        long minutes = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        int sensorHz = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        System.setProperty("robot.sensorHz", Integer.toString(sensorHz));
+
+        VirtualClock clock = new VirtualClock();
+        RobotLogger.setClock(clock);
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_TELEMETRY, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_SENSOR_COMMAND, LogPolicy.none());
+        RobotLogger.setPolicy(RobotLogger.CATEGORY_MOTOR_COMMAND, LogPolicy.none());
+
+        PicoSimulator simulator = new PicoSimulator("127.0.0.1", 0, 0,
+            new LinkImpairment(seed).delay(2).jitter(3).loss(0.01),
+            new LinkImpairment(seed + 1).delay(2).jitter(3).loss(0.01),
+            new MecanumPhysics(), clock);
+        simulator.startInProcess();
+        StreamTransport tcp = simulator.newStreamTransport();
+        DatagramTransport udp = simulator.newDatagramTransport();
+        tcp.connect();
+        udp.connect();
+        RobotModel robot = new RobotModel(null, new Imu(), tcp, udp, null, clock);
+        robot.start();
+
+        HeadingHoldController controller = new HeadingHoldController(robot);
+        controller.setVelocity(0.3, 0);
+        controller.start();
+
+        Random random = new Random(seed);
+        double[] target = {0};
+        ScheduledExecutorService steps = clock.newScheduler("soak-steps");
+        steps.scheduleAtFixedRate(() -> {
+            target[0] += Math.toRadians(random.nextInt(181) - 90);
+            controller.setHeading(target[0]);
+        }, 1, STEP_SECONDS, TimeUnit.SECONDS);
+
+        long wallStart = System.nanoTime();
+        for (long minute = 0; minute < minutes; minute++) {
+            clock.advance(1, TimeUnit.MINUTES);
+        }
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+
+        steps.shutdownNow();
+        controller.stop();
+        robot.stop();
+        double odometryError;
+        synchronized (simulator.getPhysics()) {
+            Odometry.Pose pose = robot.getOdometry().getPose();
+            odometryError = Math.hypot(pose.x - simulator.getPhysics().getX(), pose.y - simulator.getPhysics().getY());
+        }
+        simulator.stop();
+
+        long stepCount = minutes * 60 / STEP_SECONDS;
+        long settled = controller.getSettleTime().getCount();
+        System.out.printf("%d simulated minutes in %.1f s wall (%.0fx), %d events%n",
+            minutes, wallSeconds, minutes * 60 / wallSeconds, clock.getExecutedEvents());
+        System.out.printf("steps settled %d of about %d, rise p50 %.0f ms, settle p50 %.0f ms%n",
+            settled, stepCount, controller.getRiseTime().getP50() / 1e6, controller.getSettleTime().getP50() / 1e6);
+        System.out.printf("simulator: %s%n", simulator);
+        System.out.printf("dead reckoning error after the run %.3f m%n", odometryError);
+        boolean ok = settled >= stepCount * 9 / 10 && odometryError <= MAX_ODOMETRY_ERROR_METERS;
+        System.out.println(ok ? "PASS" : "FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+}
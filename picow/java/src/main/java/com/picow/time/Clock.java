@@ -0,0 +1,22 @@
+package com.picow.time;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Source of time and scheduling for the robot stack. SystemClock is the wall
+ * clock with a thread per scheduler; VirtualClock is a discrete-event clock
+ * whose schedulers share one event queue and only move when the clock is
+ * advanced, so simulated runs go as fast as the events can be processed.
+ * Code that has its own threads or sleeps checks isVirtual() and runs its
+ * work as scheduled events instead.
+ */
+public interface Clock {
+    long currentTimeMillis();
+
+    long nanoTime();
+
+    // A single-threaded scheduler; shut it down when done
+    ScheduledExecutorService newScheduler(String threadName);
+
+    boolean isVirtual();
+}
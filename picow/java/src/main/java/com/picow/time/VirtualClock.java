@@ -0,0 +1,284 @@
+package com.picow.time;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event clock. Time starts at zero nanos (epochMillis on the wall
+ * clock) and only moves in advance(), which runs the due events of all its
+ * schedulers in time order, then first-scheduled first, on the calling
+ * thread. Events may schedule further events, including ones due at the
+ * current time. Nothing blocks: a future's get() only works once it has run.
+ * Shutting a scheduler down drops all of its pending events.
+ */
+public class VirtualClock implements Clock {
+    public static final long DEFAULT_EPOCH_MILLIS = 1_700_000_000_000L;
+
+    private final long epochMillis;
+    private final PriorityQueue<Event<?>> queue = new PriorityQueue<>();
+    private long nowNanos;
+    private long sequence;
+    private long executed;
+    private boolean advancing;
+
+    public VirtualClock() {
+        this(DEFAULT_EPOCH_MILLIS);
+    }
+
+    public VirtualClock(long epochMillis) {
+        this.epochMillis = epochMillis;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return epochMillis + nowNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return nowNanos;
+    }
+
+    @Override
+    public ScheduledExecutorService newScheduler(String threadName) {
+        return new Scheduler(threadName);
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return true;
+    }
+
+    public synchronized long getExecutedEvents() {
+        return executed;
+    }
+
+    public synchronized int getPendingEvents() {
+        return queue.size();
+    }
+
+    // Runs every event due up to now + duration, then leaves the clock there
+    public void advance(long duration, TimeUnit unit) {
+        long end;
+        synchronized (this) {
+            if (advancing) {
+                throw new IllegalStateException("advance() called from inside an event");
+            }
+            advancing = true;
+            end = nowNanos + unit.toNanos(duration);
+        }
+        try {
+            while (true) {
+                Event<?> event;
+                synchronized (this) {
+                    event = queue.peek();
+                    if (event == null || event.timeNanos > end) {
+                        nowNanos = end;
+                        return;
+                    }
+                    queue.poll();
+                    nowNanos = event.timeNanos;
+                    executed++;
+                }
+                event.run();
+            }
+        } finally {
+            synchronized (this) {
+                advancing = false;
+            }
+        }
+    }
+
+    private synchronized void enqueue(Event<?> event) {
+        event.sequence = sequence++;
+        queue.add(event);
+    }
+
+    private final class Event<V> implements ScheduledFuture<V>, Runnable {
+        private final Scheduler owner;
+        private final Callable<V> task;
+        private final long periodNanos; // 0 once, > 0 fixed rate, < 0 fixed delay
+        private long timeNanos;
+        private long sequence;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private V result;
+        private Throwable failure;
+
+        Event(Scheduler owner, Callable<V> task, long timeNanos, long periodNanos) {
+            this.owner = owner;
+            this.task = task;
+            this.timeNanos = timeNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled || owner.shutdown) {
+                return;
+            }
+            try {
+                V value = task.call();
+                if (periodNanos == 0) {
+                    result = value;
+                    done = true;
+                } else if (!cancelled && !owner.shutdown) {
+                    timeNanos = periodNanos > 0 ? timeNanos + periodNanos : nanoTime() - periodNanos;
+                    enqueue(this);
+                }
+            } catch (Throwable t) {
+                // Like a ScheduledThreadPoolExecutor, a failing periodic task is not run again
+                failure = t;
+                done = true;
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(timeNanos - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof Event) {
+                Event<?> event = (Event<?>) other;
+                int byTime = Long.compare(timeNanos, event.timeNanos);
+                return byTime != 0 ? byTime : Long.compare(sequence, event.sequence);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done) return false;
+            cancelled = true;
+            synchronized (VirtualClock.this) {
+                queue.remove(this);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public V get() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (!done) {
+                throw new IllegalStateException("Not run yet; advance the virtual clock first");
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return result;
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+    }
+
+    private final class Scheduler extends AbstractExecutorService implements ScheduledExecutorService {
+        private final String name;
+        private volatile boolean shutdown;
+
+        Scheduler(String name) {
+            this.name = name;
+        }
+
+        private <V> Event<V> submitEvent(Callable<V> task, long delayNanos, long periodNanos) {
+            if (shutdown) {
+                throw new RejectedExecutionException(name + " is shut down");
+            }
+            Event<V> event = new Event<>(this, task, nanoTime() + Math.max(0, delayNanos), periodNanos);
+            enqueue(event);
+            return event;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return submitEvent(Executors.callable(command), unit.toNanos(delay), 0);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return submitEvent(callable, unit.toNanos(delay), 0);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("Period must be positive: " + period);
+            }
+            return submitEvent(Executors.callable(command), unit.toNanos(initialDelay), unit.toNanos(period));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            if (delay <= 0) {
+                throw new IllegalArgumentException("Delay must be positive: " + delay);
+            }
+            return submitEvent(Executors.callable(command), unit.toNanos(initialDelay), -unit.toNanos(delay));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            submitEvent(Executors.callable(command), 0, 0);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            synchronized (VirtualClock.this) {
+                queue.removeIf(event -> event.owner == this);
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+
+        @Override
+        public String toString() {
+            return "VirtualClock.Scheduler[" + name + "]";
+        }
+    }
+}
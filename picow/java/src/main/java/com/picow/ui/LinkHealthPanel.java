@@ -0,0 +1,171 @@
+package com.picow.ui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridLayout;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import com.picow.controller.ControllerBase;
+import com.picow.metrics.Counter;
+import com.picow.metrics.LatencyHistogram;
+import com.picow.metrics.Metrics;
+import com.picow.model.RobotModel;
+
+/**
+ * Status strip with one robot's link and loop health. Everything is derived
+ * from the robot's metrics once per refresh, as deltas between consecutive
+ * snapshots, so the cost is independent of the control and telemetry rates.
+ */
+public class LinkHealthPanel extends JPanel {
+    public static final int DEFAULT_REFRESH_MILLIS = 1000;
+    private static final Color WARN = new Color(200, 120, 0);
+    private static final Color BAD = new Color(200, 0, 0);
+
+    private final RobotModel robot;
+    private final Counter motorFrames;
+    private final Counter telemetrySamples;
+    private final LatencyHistogram rtt;
+    private final Counter udpFailures;
+    private final Counter reconnects;
+    private final ControllerBase controller;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final JLabel motorLabel = createLabel();
+    private final JLabel telemetryLabel = createLabel();
+    private final JLabel rttLabel = createLabel();
+    private final JLabel linkLabel = createLabel();
+    private final JLabel loopLabel = createLabel();
+    private final JLabel heapLabel = createLabel();
+    private final Timer refreshTimer;
+
+    // Previous values for interval deltas
+    private long lastNanos;
+    private long lastMotorFrames;
+    private long lastTelemetrySamples;
+    private LatencyHistogram.Snapshot lastRtt;
+    private LatencyHistogram.Snapshot lastJitter;
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    // controller may be null, then the loop cell stays empty
+    public LinkHealthPanel(RobotModel robot, ControllerBase controller) {
+        this(robot, controller, DEFAULT_REFRESH_MILLIS);
+    }
+
+    public LinkHealthPanel(RobotModel robot, ControllerBase controller, int refreshMillis) {
+        super(new GridLayout(2, 3, 12, 2));
+        this.robot = robot;
+        this.controller = controller;
+        // Named and fleet robots have prefixed metrics, as do their transports
+        motorFrames = Metrics.counter(robot.metricName("robot.motorFrames"));
+        telemetrySamples = Metrics.counter(robot.metricName("robot.telemetrySamples"));
+        rtt = Metrics.histogram(robot.metricName("tcp.rtt.nanos"));
+        udpFailures = Metrics.counter(robot.metricName("udp.sendFailures"));
+        reconnects = Metrics.counter(robot.metricName("tcp.reconnects"));
+        add(motorLabel);
+        add(telemetryLabel);
+        add(rttLabel);
+        add(linkLabel);
+        add(loopLabel);
+        add(heapLabel);
+
+        lastNanos = System.nanoTime();
+        lastMotorFrames = motorFrames.getCount();
+        lastTelemetrySamples = telemetrySamples.getCount();
+        lastRtt = rtt.snapshot();
+        lastJitter = controller != null ? controller.getLoopJitter().snapshot() : null;
+        lastGcCount = gcCount();
+        lastGcMillis = gcMillis();
+        refresh();
+
+        refreshTimer = new Timer(refreshMillis, e -> refresh());
+        refreshTimer.setCoalesce(true);
+    }
+
+    private static JLabel createLabel() {
+        JLabel label = new JLabel("-");
+        label.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        return label;
+    }
+
+    private void refresh() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastNanos) / 1e9);
+        lastNanos = now;
+
+        long frames = motorFrames.getCount();
+        double motorRate = (frames - lastMotorFrames) / seconds;
+        lastMotorFrames = frames;
+        double targetMotorRate = robot.getMotorSendRate(); // retunable at runtime
+        motorLabel.setText(String.format("Motor %.0f/%.0f fps", motorRate, targetMotorRate));
+        motorLabel.setForeground(motorRate < 0.9 * targetMotorRate ? (motorRate < 0.5 * targetMotorRate ? BAD : WARN) : Color.BLACK);
+
+        long samples = telemetrySamples.getCount();
+        telemetryLabel.setText(String.format("IMU %.1f/s", (samples - lastTelemetrySamples) / seconds));
+        lastTelemetrySamples = samples;
+
+        LatencyHistogram.Snapshot rttNow = rtt.snapshot();
+        LatencyHistogram.Snapshot rttInterval = rttNow.minus(lastRtt);
+        lastRtt = rttNow;
+        if (rttInterval.getCount() > 0) {
+            rttLabel.setText(String.format("RTT p50 %.1f p99 %.1f ms",
+                rttInterval.percentile(50) / 1e6, rttInterval.percentile(99) / 1e6));
+        } else {
+            rttLabel.setText("RTT n/a");
+        }
+
+        linkLabel.setText(String.format("UDP fail %d  Reconnects %d", udpFailures.getCount(), reconnects.getCount()));
+
+        if (controller != null) {
+            LatencyHistogram.Snapshot jitterNow = controller.getLoopJitter().snapshot();
+            LatencyHistogram.Snapshot jitterInterval = jitterNow.minus(lastJitter);
+            lastJitter = jitterNow;
+            loopLabel.setText(String.format("%s jitter p99 %.2f ms overruns %d", controller.getName(),
+                jitterInterval.percentile(99) / 1e6, controller.getLoopOverruns().getCount()));
+        }
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        heapLabel.setText(String.format("Heap %d MB  GC %.1f/s %.0f ms/s",
+            memory.getHeapMemoryUsage().getUsed() >> 20,
+            (gcCount - lastGcCount) / seconds, (gcMillis - lastGcMillis) / seconds));
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+    }
+
+    private long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+}
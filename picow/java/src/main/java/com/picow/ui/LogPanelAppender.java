@@ -1,53 +1,96 @@
 package com.picow.ui;
 
 import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JTextPane;
-import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
+import javax.swing.text.Element;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyleContext;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import org.slf4j.Marker;
+
 import com.picow.RobotLogger;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.AppenderBase;
 
 public class LogPanelAppender extends AppenderBase<ILoggingEvent> {
+    public static final int DEFAULT_MAX_LINES = 2000;
+    public static final int DEFAULT_FLUSH_INTERVAL_MS = 33; // ~30Hz
+
     private JTextPane logPanel;
     private StyleContext styleContext;
     private Style defaultStyle;
     private Style telemetryStyle;    // Blue for TELEMETRY
     private Style sensorCommandStyle; // Green for SENSOR_COMMAND
     private Style motorCommandStyle;  // Red for MOTOR_COMMAND
-    private final Gson gson = new Gson();
     private final AtomicBoolean enabled = new AtomicBoolean(true);
 
+    // Events are buffered off the EDT and flushed in one batch per timer tick
+    private final ConcurrentLinkedQueue<PendingLine> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final int maxLines;
+    private final Timer flushTimer;
+    private final StringBuilder runBuffer = new StringBuilder(4096);
+
     public LogPanelAppender(JTextPane logPanel) {
+        this(logPanel, DEFAULT_MAX_LINES, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public LogPanelAppender(JTextPane logPanel, int maxLines, int flushIntervalMillis) {
+        if (maxLines <= 0) {
+            throw new IllegalArgumentException("maxLines must be positive");
+        }
         this.logPanel = logPanel;
+        this.maxLines = maxLines;
         this.styleContext = StyleContext.getDefaultStyleContext();
-        
+
         // Create base style
         defaultStyle = styleContext.addStyle("default", null);
         StyleConstants.setForeground(defaultStyle, Color.BLACK);
-        
+
         // Create styles for different log categories
         telemetryStyle = styleContext.addStyle("telemetry", defaultStyle);
         StyleConstants.setForeground(telemetryStyle, new Color(0, 0, 255)); // Blue
-        
+
         sensorCommandStyle = styleContext.addStyle("sensor_command", defaultStyle);
         StyleConstants.setForeground(sensorCommandStyle, new Color(0, 128, 0)); // Green
-        
+
         motorCommandStyle = styleContext.addStyle("motor_command", defaultStyle);
         StyleConstants.setForeground(motorCommandStyle, new Color(255, 0, 0)); // Red
+
+        flushTimer = new Timer(flushIntervalMillis, e -> flush());
+        flushTimer.setCoalesce(true);
     }
 
     public void setEnabled(boolean enabled) {
         this.enabled.set(enabled);
+        if (!enabled) {
+            pending.clear();
+            pendingCount.set(0);
+        }
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        flushTimer.start();
+    }
+
+    @Override
+    public void stop() {
+        flushTimer.stop();
+        pending.clear();
+        pendingCount.set(0);
+        super.stop();
     }
 
     @Override
@@ -56,38 +99,78 @@ public class LogPanelAppender extends AppenderBase<ILoggingEvent> {
             return;
         }
 
-        SwingUtilities.invokeLater(() -> {
-            try {
-                if (!enabled.get())
-                    return;
-                Document doc = logPanel.getDocument();
-                
-                // Parse the log message as JSON to get the category
-                String message = event.getFormattedMessage();
-                JsonObject logEntry = gson.fromJson(message, JsonObject.class);
-                String category = logEntry.get("category").getAsString();
-                
-                // Get style based on category
-                Style style = getStyleForCategory(category);
-                
-                // Format the log message with timestamp
-                String formattedMessage = String.format("%s [%s] %s%n",
-                    event.getTimeStamp(),
-                    category,
-                    message);
-
-                // Append the message with appropriate style
-                doc.insertString(doc.getLength(), formattedMessage, style);
-
-                // Auto-scroll to the bottom
-                logPanel.setCaretPosition(doc.getLength());
-            } catch (Exception e) {
-                e.printStackTrace();
+        pending.offer(new PendingLine(event.getTimeStamp(), categoryOf(event), event.getFormattedMessage()));
+        // Anything beyond maxLines would be trimmed on the next flush anyway, so drop it here
+        if (pendingCount.incrementAndGet() > maxLines && pending.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    // Runs on the EDT from the flush timer
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (!enabled.get()) {
+            pending.clear();
+            pendingCount.set(0);
+            return;
+        }
+
+        try {
+            Document doc = logPanel.getDocument();
+            Style runStyle = null;
+            PendingLine line;
+            // Insert consecutive lines of the same category as a single run
+            while ((line = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                Style style = getStyleForCategory(line.category);
+                if (style != runStyle && runBuffer.length() > 0) {
+                    doc.insertString(doc.getLength(), runBuffer.toString(), runStyle);
+                    runBuffer.setLength(0);
+                }
+                runStyle = style;
+                runBuffer.append(line.timestamp).append(" [")
+                    .append(line.category == null ? "LOG" : line.category).append("] ")
+                    .append(line.message).append(System.lineSeparator());
             }
-        });
+            if (runBuffer.length() > 0) {
+                doc.insertString(doc.getLength(), runBuffer.toString(), runStyle);
+                runBuffer.setLength(0);
+            }
+
+            trimHead(doc);
+
+            // Auto-scroll to the bottom
+            logPanel.setCaretPosition(doc.getLength());
+        } catch (Exception e) {
+            runBuffer.setLength(0);
+            e.printStackTrace();
+        }
+    }
+
+    // Remove the oldest lines with a single Document.remove
+    private void trimHead(Document doc) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        // The last paragraph is the empty one after the trailing newline
+        int excess = root.getElementCount() - 1 - maxLines;
+        if (excess > 0) {
+            doc.remove(0, root.getElement(excess - 1).getEndOffset());
+        }
+    }
+
+    private static String categoryOf(ILoggingEvent event) {
+        List<Marker> markers = event.getMarkerList();
+        if (markers == null || markers.isEmpty()) {
+            return null;
+        }
+        return markers.get(0).getName();
     }
 
     private Style getStyleForCategory(String category) {
+        if (category == null) {
+            return defaultStyle;
+        }
         switch (category) {
             case RobotLogger.CATEGORY_TELEMETRY:
                 return telemetryStyle;
@@ -99,4 +182,16 @@ public class LogPanelAppender extends AppenderBase<ILoggingEvent> {
                 return defaultStyle;
         }
     }
-} 
\ No newline at end of file
+
+    private static final class PendingLine {
+        final long timestamp;
+        final String category;
+        final String message;
+
+        PendingLine(long timestamp, String category, String message) {
+            this.timestamp = timestamp;
+            this.category = category;
+            this.message = message;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import ch.qos.logback.classic.LoggerContext;
 
 public class MainWindow extends JFrame {
     private final JPanel statusPanel;
+    private final JPanel plotPanel;
     private final JTextPane logPanel;
     private final JToolBar toolBar;
     private final AtomicBoolean logsEnabled = new AtomicBoolean(true);
@@ -62,10 +63,14 @@ public class MainWindow extends JFrame {
         // Add toolbar at the top
         mainPanel.add(toolBar, BorderLayout.NORTH);
         
-        // Create status panel below toolbar
+        // Create status panel below toolbar, with the plots filling the rest
+        JPanel centerPanel = new JPanel(new BorderLayout());
         statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         statusPanel.setBorder(BorderFactory.createTitledBorder("Status"));
-        mainPanel.add(statusPanel, BorderLayout.CENTER);
+        centerPanel.add(statusPanel, BorderLayout.NORTH);
+        plotPanel = new JPanel(new BorderLayout());
+        centerPanel.add(plotPanel, BorderLayout.CENTER);
+        mainPanel.add(centerPanel, BorderLayout.CENTER);
 
         // Create log panel at the bottom
         logPanel = new JTextPane();
@@ -104,7 +109,7 @@ public class MainWindow extends JFrame {
         logPanelAppender = new LogPanelAppender(logPanel);
         logPanelAppender.setEnabled(logsEnabled.get());
         logPanelAppender.start();
-        RobotLogger.initializeLogging(logPanel, logPanelAppender);
+        RobotLogger.initializeLogging(logPanelAppender);
     }
 
     public void setWindowClosingHandler(Consumer<WindowEvent> handler) {
@@ -116,6 +121,12 @@ public class MainWindow extends JFrame {
         statusPanel.revalidate();
     }
 
+    public void setPlotComponent(Component component) {
+        plotPanel.removeAll();
+        plotPanel.add(component, BorderLayout.CENTER);
+        plotPanel.revalidate();
+    }
+
     @Override
     public void dispose() {
         if (logPanelAppender != null) {
@@ -0,0 +1,53 @@
+package com.picow.ui;
+
+/**
+ * Preallocated multi-channel ring of samples. One producer thread writes with
+ * set()/commit(); the painter reads the most recent samples without locking.
+ * A reader racing a lapping writer may see a torn sample, which is harmless for display.
+ */
+public class SampleRing {
+    private final double[][] values; // [channel][slot]
+    private final double[] staging;
+    private final int mask;
+    private volatile long count;
+
+    public SampleRing(int channels, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.values = new double[channels][capacity];
+        this.staging = new double[channels];
+        this.mask = capacity - 1;
+    }
+
+    public int channels() {
+        return values.length;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // Producer side
+    public void set(int channel, double value) {
+        staging[channel] = value;
+    }
+
+    public void commit() {
+        long n = count;
+        int slot = (int) (n & mask);
+        for (int ch = 0; ch < values.length; ch++) {
+            values[ch][slot] = staging[ch];
+        }
+        count = n + 1;
+    }
+
+    // Reader side: index is an absolute sample number in [count - capacity, count)
+    public double get(int channel, long index) {
+        return values[channel][(int) (index & mask)];
+    }
+}
@@ -0,0 +1,144 @@
+package com.picow.ui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+
+import javax.swing.JComponent;
+
+/**
+ * Scrolling plot of the most recent samples of a SampleRing. Painting reuses one
+ * Path2D per channel and collapses samples to a min/max pair per pixel column, so
+ * the cost depends on the component width, not on the sample rate.
+ */
+public class StripChart extends JComponent {
+    private static final Color[] DEFAULT_COLORS = {
+        new Color(220, 0, 0), new Color(0, 150, 0), new Color(0, 0, 220), new Color(230, 140, 0)
+    };
+
+    private final String title;
+    private final SampleRing ring;
+    private final String[] channelNames;
+    private final Color[] colors;
+    private final Path2D.Double[] paths;
+    private final BasicStroke stroke = new BasicStroke(1f);
+    private final double fixedMin;
+    private final double fixedMax;
+    private final boolean autoScale;
+
+    public StripChart(String title, SampleRing ring, String[] channelNames) {
+        this(title, ring, channelNames, Double.NaN, Double.NaN);
+    }
+
+    // Pass NaN bounds to autoscale on the visible window
+    public StripChart(String title, SampleRing ring, String[] channelNames, double min, double max) {
+        if (channelNames.length != ring.channels()) {
+            throw new IllegalArgumentException("channel names do not match ring channels");
+        }
+        this.title = title;
+        this.ring = ring;
+        this.channelNames = channelNames.clone();
+        this.colors = new Color[channelNames.length];
+        this.paths = new Path2D.Double[channelNames.length];
+        for (int ch = 0; ch < channelNames.length; ch++) {
+            colors[ch] = DEFAULT_COLORS[ch % DEFAULT_COLORS.length];
+            paths[ch] = new Path2D.Double(Path2D.WIND_NON_ZERO, 1024);
+        }
+        this.fixedMin = min;
+        this.fixedMax = max;
+        this.autoScale = Double.isNaN(min) || Double.isNaN(max);
+        setPreferredSize(new Dimension(360, 110));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        int w = getWidth();
+        int h = getHeight();
+        g2.setColor(getBackground());
+        g2.fillRect(0, 0, w, h);
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.drawRect(0, 0, w - 1, h - 1);
+
+        long end = ring.count();
+        long available = Math.min(end, ring.capacity());
+        if (available > 1 && w > 2) {
+            long start = end - available;
+            double min = fixedMin;
+            double max = fixedMax;
+            if (autoScale) {
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+                for (int ch = 0; ch < ring.channels(); ch++) {
+                    for (long i = start; i < end; i++) {
+                        double v = ring.get(ch, i);
+                        if (v < min) min = v;
+                        if (v > max) max = v;
+                    }
+                }
+                if (max - min < 1e-9) {
+                    max += 0.5;
+                    min -= 0.5;
+                }
+            }
+            double yScale = (h - 4) / (max - min);
+            double zero = h - 2 + min * yScale;
+
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            g2.setStroke(stroke);
+            if (min < 0 && max > 0) {
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(0, (int) zero, w, (int) zero);
+            }
+            for (int ch = 0; ch < ring.channels(); ch++) {
+                buildPath(paths[ch], ch, start, available, w, zero, yScale);
+                g2.setColor(colors[ch]);
+                g2.draw(paths[ch]);
+            }
+        }
+
+        g2.setColor(Color.DARK_GRAY);
+        int x = 4;
+        g2.drawString(title, x, 12);
+        x += g2.getFontMetrics().stringWidth(title) + 8;
+        for (int ch = 0; ch < channelNames.length; ch++) {
+            g2.setColor(colors[ch]);
+            g2.drawString(channelNames[ch], x, 12);
+            x += g2.getFontMetrics().stringWidth(channelNames[ch]) + 6;
+        }
+    }
+
+    private void buildPath(Path2D.Double path, int ch, long start, long available, int w, double zero, double yScale) {
+        path.reset();
+        double samplesPerPixel = (double) available / w;
+        if (samplesPerPixel <= 1.0) {
+            double xStep = (double) (w - 1) / (available - 1);
+            for (long i = 0; i < available; i++) {
+                double y = zero - ring.get(ch, start + i) * yScale;
+                if (i == 0) path.moveTo(0, y); else path.lineTo(i * xStep, y);
+            }
+            return;
+        }
+        // More samples than pixels: draw the min/max envelope per column
+        long i = 0;
+        for (int px = 0; px < w; px++) {
+            long colEnd = Math.min(available, (long) ((px + 1) * samplesPerPixel));
+            if (i >= colEnd) continue;
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            for (; i < colEnd; i++) {
+                double v = ring.get(ch, start + i);
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+            if (px == 0) path.moveTo(px, zero - lo * yScale); else path.lineTo(px, zero - lo * yScale);
+            path.lineTo(px, zero - hi * yScale);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.picow.ui;
+
+import java.awt.GridLayout;
+import java.util.function.Consumer;
+
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import com.picow.model.RobotModel;
+import com.picow.model.commands.MotorCommand;
+import com.picow.model.sensors.Imu;
+
+/**
+ * Live strip charts of accel, gyro, temperature and the four PWM outputs.
+ * Samples go into preallocated rings on the producing thread; the charts are
+ * repainted by a fixed-rate Swing timer independent of the data rate.
+ */
+public class TelemetryPlotPanel extends JPanel {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_REFRESH_HZ = 25;
+
+    private final SampleRing accelRing;
+    private final SampleRing gyroRing;
+    private final SampleRing tempRing;
+    private final SampleRing pwmRing;
+    private final Timer repaintTimer;
+    private final Consumer<Imu.Data> imuListener = this::recordImu;
+    private final Consumer<MotorCommand> motorListener = this::recordMotorCommand;
+    private RobotModel robot;
+
+    public TelemetryPlotPanel() {
+        this(DEFAULT_CAPACITY, DEFAULT_REFRESH_HZ);
+    }
+
+    public TelemetryPlotPanel(int capacity, int refreshHz) {
+        super(new GridLayout(2, 2, 4, 4));
+        accelRing = new SampleRing(3, capacity);
+        gyroRing = new SampleRing(3, capacity);
+        tempRing = new SampleRing(1, capacity);
+        pwmRing = new SampleRing(4, capacity);
+
+        add(new StripChart("Accel (g)", accelRing, new String[]{"x", "y", "z"}));
+        add(new StripChart("Gyro (dps)", gyroRing, new String[]{"x", "y", "z"}));
+        add(new StripChart("Temp (C)", tempRing, new String[]{"t"}));
+        add(new StripChart("PWM", pwmRing, new String[]{"m0", "m1", "m2", "m3"}, -65535, 65535));
+
+        repaintTimer = new Timer(1000 / refreshHz, e -> repaint());
+        repaintTimer.setCoalesce(true);
+    }
+
+    public void attach(RobotModel robot) {
+        detach();
+        this.robot = robot;
+        robot.addImuListener(imuListener);
+        robot.addMotorCommandListener(motorListener);
+    }
+
+    public void detach() {
+        if (robot != null) {
+            robot.removeImuListener(imuListener);
+            robot.removeMotorCommandListener(motorListener);
+            robot = null;
+        }
+    }
+
+    public void recordImu(Imu.Data data) {
+        for (int axis = 0; axis < 3; axis++) {
+            accelRing.set(axis, data.getAccel(axis));
+            gyroRing.set(axis, data.getGyro(axis));
+        }
+        accelRing.commit();
+        gyroRing.commit();
+        tempRing.set(0, data.getTemp());
+        tempRing.commit();
+    }
+
+    public void recordMotorCommand(MotorCommand command) {
+        for (int i = 0; i < 4; i++) {
+            pwmRing.set(i, command.pwm[i]);
+        }
+        pwmRing.commit();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        repaintTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        repaintTimer.stop();
+        super.removeNotify();
+    }
+}
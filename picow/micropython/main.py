@@ -1,3 +1,4 @@
+import errno
 import json
 import socket
 import struct
@@ -16,6 +17,8 @@ SHARED_WIFI_SSID = ""
 TCP_PORT = 8080
 UDP_PORT = 8081
 MAX_CONNECTIONS = 10
+SEQ_RESTART_GAP = 1000  # a sequence number this far back means the client restarted
+PLAYOUT_PERIOD_S = 0.005  # how often a lookahead plan is interpolated while no frame arrives
 
 MODE_PIN = Pin(15, Pin.IN, Pin.PULL_DOWN)  # or PULL_UP, depending on your jumper
 USE_AP_MODE = MODE_PIN.value() == 1  # HIGH = AP mode; LOW = STA mode
@@ -205,17 +208,20 @@ class TCPServer:
         if self.socket:
             self.socket.close()
 
-    def handle_client(self, imu, pwm_motors):
+    def handle_client(self, imu, pwm_motors, udp_server):
         buffer = ""
         while self.running:
             try:
                 # If no client, wait for one
                 if not self.client_socket:
                     print("Waiting for TCP client...")
+                    udp_server.plan = None
                     pwm_motors.stop_all()
                     self.client_socket, self.client_address = self.socket.accept()
                     print(f'TCP client connected from {self.client_address}')
                     buffer = ""  # Clear buffer for new client
+                    udp_server.last_seq = 0  # new client restarts its frame numbering
+                    # A latched stop holds across clients; only estop_release clears it
 
                 # Handle client
                 data = self.client_socket.recv(1024)
@@ -242,6 +248,17 @@ class TCPServer:
                             }
                             command['data'] = imu_data
                             command['error'] = None
+                        elif command.get('type') == 'udp_stats':
+                            command['data'] = udp_server.stats()
+                            command['error'] = None
+                        elif command.get('type') == 'estop':
+                            udp_server.latch_stop(pwm_motors)
+                            command['data'] = {'latched': True}
+                            command['error'] = None
+                        elif command.get('type') == 'estop_release':
+                            udp_server.release_stop(command.get('timestamp', 0))
+                            command['data'] = {'latched': False}
+                            command['error'] = None
                         else:
                             command['error'] = "Unknown command type"
                             command['data'] = None
@@ -268,10 +285,86 @@ class UDPServer:
         self.socket = None
         self.client_address = None
         self.running = False
+        # Motor frame sequencing; see accept_sequence
+        self.last_seq = 0
+        self.received = 0
+        self.applied = 0
+        self.recovered = 0
+        self.lost = 0
+        self.stale = 0
+        # Lookahead plan being played out: list of (ticks_ms, powers), or None
+        self.plan = None
+        # Emergency stop: motor frames are ignored until a TCP estop_release
+        self.estop_latched = False
+        self.estop_ignored = 0
+        # Timestamp of the last estop_release; flagged frames from before it are late copies
+        self.estop_released_at = 0
+
+    def stats(self):
+        return {'received': self.received, 'applied': self.applied, 'recovered': self.recovered,
+                'lost': self.lost, 'stale': self.stale, 'estop_ignored': self.estop_ignored}
+
+    def release_stop(self, timestamp):
+        self.estop_latched = False
+        self.estop_released_at = max(self.estop_released_at, timestamp)
+
+    def latch_stop(self, pwm_motors):
+        self.estop_latched = True
+        self.plan = None
+        pwm_motors.stop_all()
+
+    def accept_sequence(self, command):
+        # Apply only frames newer than the last one applied. Frames skipped in between
+        # count as recovered if this datagram's history carries them, otherwise as lost.
+        seq = command.get('seq')
+        if seq is None:
+            return True  # client without sequence numbers
+        last = self.last_seq
+        if seq <= last and seq != 1 and last - seq < SEQ_RESTART_GAP:
+            self.stale += 1
+            return False
+        if last > 0 and seq > last:
+            recovered = 0
+            for entry in command.get('history', ()):
+                if last < entry[0] < seq:
+                    recovered += 1
+            self.recovered += recovered
+            self.lost += seq - last - 1 - recovered
+        self.last_seq = seq
+        return True
+
+    def set_plan(self, command):
+        # A frame with a "plan" starts from its own pwm and moves through [dt_ms, p0..p3]
+        # points on our clock; a plain frame (e.g. a higher-priority source) drops the plan.
+        plan = command.get('plan')
+        if not plan:
+            self.plan = None
+            return
+        now = time.ticks_ms()
+        self.plan = [(now, command.get('pwm'))] + [(time.ticks_add(now, p[0]), p[1:]) for p in plan]
+
+    def play(self, pwm_motors):
+        plan = self.plan
+        if not plan:
+            return
+        now = time.ticks_ms()
+        while len(plan) > 1 and time.ticks_diff(plan[1][0], now) <= 0:
+            plan.pop(0)
+        t0, p0 = plan[0]
+        if len(plan) == 1:
+            powers = p0  # hold the last point
+            self.plan = None
+        else:
+            t1, p1 = plan[1]
+            f = time.ticks_diff(now, t0) / time.ticks_diff(t1, t0)
+            f = min(1.0, max(0.0, f))
+            powers = [int(a + (b - a) * f) for a, b in zip(p0, p1)]
+        pwm_motors.set_powers(powers)
 
     def start(self):
         self.socket = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
         self.socket.bind((self.ip_address, self.port))
+        self.socket.settimeout(PLAYOUT_PERIOD_S)  # wake up to play out plans
         print(f'UDP server started on {self.ip_address}:{self.port}')
         self.running = True
         blink_led(main_led)
@@ -284,9 +377,16 @@ class UDPServer:
     def handle_client(self, pwm_motors):
         while self.running:
             try:
-                data, addr = self.socket.recvfrom(1024)
+                try:
+                    data, addr = self.socket.recvfrom(1024)
+                except OSError as e:
+                    if e.args[0] != errno.ETIMEDOUT:
+                        raise
+                    self.play(pwm_motors)
+                    continue
                 if not data:
                     continue
+                self.received += 1
                 
                 # Update client address if it changed
                 if self.client_address != addr:
@@ -298,12 +398,23 @@ class UDPServer:
 
                 try:
                     command = json.loads(data)
-                    if command.get('type') == 'motor':
+                    if command.get('estop'):
+                        # Copies sent before the last release must not latch again
+                        if command.get('timestamp', 0) > self.estop_released_at:
+                            self.latch_stop(pwm_motors)
+                    elif self.estop_latched:
+                        self.estop_ignored += 1
+                    elif command.get('type') == 'motor' and self.accept_sequence(command):
                         pwms = command.get('pwm')
                         pwm_motors.set_powers(pwms)
+                        self.set_plan(command)
+                        self.applied += 1
+                        if self.applied % 1000 == 0:
+                            print('UDP frames', self.stats())
                 except Exception as e:
                     print('Invalid UDP command:', e)
                     blink_led(udp_error_led)
+                self.play(pwm_motors)
 
             except Exception as e:
                 print(f'UDP connection error: {e}')
@@ -329,7 +440,7 @@ def start_servers(ip_address):
         # Start UDP server in a separate thread
         _thread.start_new_thread(udp_server.handle_client, (pwm_motors,))
         # Run TCP server in main thread
-        tcp_server.handle_client(imu, pwm_motors)
+        tcp_server.handle_client(imu, pwm_motors, udp_server)
     except KeyboardInterrupt:
         print("Shutting down servers...")
     finally: